@@ -22,9 +22,16 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import org.apache.commons.collections4.BidiMap;
 import org.apache.sling.api.resource.LoginException;
@@ -32,6 +39,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.resourceresolver.impl.console.ResourceResolverWebConsolePlugin;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTracer;
 import org.apache.sling.resourceresolver.impl.helper.ResourceDecoratorTracker;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider;
@@ -83,6 +91,12 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
     /** Background thread handling disposing of resource resolver instances. */
     private final Thread refQueueThread;
 
+    /** Executor for authenticating resource providers concurrently, {@code null} if disabled. */
+    private final ExecutorService authenticationExecutor;
+
+    /** Tracer for slow resolve and map calls, {@code null} if disabled. */
+    private final ResolutionTracer resolutionTracer;
+
     private boolean logUnclosedResolvers;
 
     private final Object optionalNamespaceMangler;
@@ -111,6 +125,29 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
         this.refQueueThread.setDaemon(true);
         this.refQueueThread.start();
 
+        // if all threads are busy, the provider is authenticated by the thread creating the resolver
+        if ( activator.isParallelProviderAuthentication() ) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.authenticationExecutor = new ThreadPoolExecutor(0,
+                    Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+                    60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    r -> {
+                        final Thread t = new Thread(r, "Apache Sling Resource Provider Authentication Thread #" + threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        } else {
+            this.authenticationExecutor = null;
+        }
+
+        if ( activator.getSlowResolutionThreshold() > 0 ) {
+            this.resolutionTracer = new ResolutionTracer(activator.getSlowResolutionThreshold(), activator.getSlowResolutionTraces());
+        } else {
+            this.resolutionTracer = null;
+        }
+
         // try create namespace mangler
         Object mangler = null;
         if ( this.isMangleNamespacePrefixes() ) {
@@ -226,6 +263,26 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
             final ResourceResolverControl ctrl) {
         // create new weak reference
         refs.put(ctrl.hashCode(), new ResolverReference(resolver, this.resolverReferenceQueue, ctrl, this));
+        final Optional<ResourceResolverMetrics> metrics = this.activator.getResourceResolverMetrics();
+        if ( metrics.isPresent() ) {
+            metrics.get().reportResourceResolverOpened(getResourceResolverType(ctrl));
+        }
+    }
+
+    /**
+     * Get the type of a resource resolver for the metrics
+     * @param ctrl The resource resolver control
+     * @return The type, one of admin, service or user
+     */
+    private static String getResourceResolverType(final ResourceResolverControl ctrl) {
+        if ( ctrl.isAdmin() ) {
+            return ResourceResolverMetrics.RESOLVER_TYPE_ADMIN;
+        }
+        final Map<String, Object> authenticationInfo = ctrl.getAuthenticationInfo();
+        if ( authenticationInfo != null && authenticationInfo.containsKey(ResourceProvider.AUTH_SERVICE_BUNDLE) ) {
+            return ResourceResolverMetrics.RESOLVER_TYPE_SERVICE;
+        }
+        return ResourceResolverMetrics.RESOLVER_TYPE_USER;
     }
 
     /**
@@ -285,6 +342,10 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
         final ResolverReference reference = refs.remove(ctrl.hashCode());
         if (reference != null) {
             reference.clear();
+            final Optional<ResourceResolverMetrics> metrics = this.activator.getResourceResolverMetrics();
+            if ( metrics.isPresent() ) {
+                metrics.get().reportResourceResolverClosed(System.nanoTime() - reference.opened);
+            }
         }
         final boolean doCloseControl = !ctrl.isClosed();
         if (doCloseControl) {
@@ -313,6 +374,12 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
             // available
             logger.debug("activate: unable to setup web console plugin.", ignore);
         }
+        final Optional<ResourceResolverMetrics> metrics = this.activator.getResourceResolverMetrics();
+        if ( metrics.isPresent() ) {
+            metrics.get().setNumberOfOpenResourceResolversSupplier(() -> (long) refs.size());
+            final ResourceDecoratorTracker decoratorTracker = this.getResourceDecoratorTracker();
+            metrics.get().setNumberOfSkippedResourceDecoratorsSupplier(decoratorTracker::getSkippedDecorators);
+        }
         // set up the map entries from configuration
         try {
             mapEntries = new MapEntries(this, bundleContext, this.activator.getEventAdmin(), this.activator.getStringInterpolationProvider(), this.activator.getResourceResolverMetrics());
@@ -329,6 +396,9 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
             return;
         }
         this.refQueueThread.interrupt();
+        if ( this.authenticationExecutor != null ) {
+            this.authenticationExecutor.shutdown();
+        }
 
         if (plugin != null) {
             plugin.dispose();
@@ -403,6 +473,29 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
         return this.activator.getResourceAccessSecurityTracker();
     }
 
+    /**
+     * get's the metrics of the resource resolver bundle, if available
+     */
+    public Optional<ResourceResolverMetrics> getResourceResolverMetrics() {
+        return this.activator.getResourceResolverMetrics();
+    }
+
+    /**
+     * get's the executor for authenticating resource providers concurrently
+     * @return The executor or {@code null} if providers are authenticated sequentially
+     */
+    public @Nullable Executor getProviderAuthenticationExecutor() {
+        return this.authenticationExecutor;
+    }
+
+    /**
+     * get's the tracer for slow resolve and map calls
+     * @return The tracer or {@code null} if tracing is disabled
+     */
+    public @Nullable ResolutionTracer getResolutionTracer() {
+        return this.resolutionTracer;
+    }
+
     @NotNull
     @Override
     public ResourceResolver getServiceResourceResolver(
@@ -438,6 +531,11 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
         return this.activator.isOptimizeAliasResolutionEnabled();
     }
 
+    @Override
+    public boolean isAliasCacheInitInBackground() {
+        return this.activator.isAliasCacheInitInBackground();
+    }
+
     @Override
     public boolean hasVanityPathPrecedence() {
         return this.activator.hasVanityPathPrecedence();
@@ -533,6 +631,9 @@ public class CommonResourceResolverFactoryImpl implements MapConfigurationProvid
 
         private final CommonResourceResolverFactoryImpl factory;
 
+        /** The time the resolver was opened, in nanoseconds */
+        private final long opened = System.nanoTime();
+
         ResolverReference(final ResourceResolver referent,
                           final ReferenceQueue<? super ResourceResolver> q,
                           final ResourceResolverControl ctrl,
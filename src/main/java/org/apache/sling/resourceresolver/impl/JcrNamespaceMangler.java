@@ -18,8 +18,11 @@
  */
 package org.apache.sling.resourceresolver.impl;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.RepositoryException;
@@ -28,54 +31,45 @@ import javax.jcr.Session;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.slf4j.Logger;
 
+/**
+ * Mangling of namespace prefixes in paths, {@code /prefix:name} is mangled to
+ * {@code /_prefix_name} and back.
+ *
+ * The registered namespace prefixes are read once from a session and kept for
+ * all resource resolvers of the factory. A prefix which is not known is checked
+ * with the session of the resource resolver; if it turns out to be registered,
+ * the known prefixes are read again. Candidates which are not registered are
+ * remembered in a bounded set, cleared whenever the known prefixes are read.
+ *
+ * Paths are returned unchanged if the resource resolver cannot be adapted to
+ * a session.
+ */
 public class JcrNamespaceMangler {
 
-    private static final String MANGLE_NAMESPACE_IN_SUFFIX = "_";
+    private static final char MANGLE_NAMESPACE_IN_SUFFIX = '_';
 
     private static final String MANGLE_NAMESPACE_IN_PREFIX = "/_";
 
-    private static final Pattern MANGLE_NAMESPACE_IN_PATTERN = Pattern.compile("/_([^_/]+)_");
-
-    private static final String MANGLE_NAMESPACE_OUT_SUFFIX = ":";
+    private static final char MANGLE_NAMESPACE_OUT_SUFFIX = ':';
 
     private static final String MANGLE_NAMESPACE_OUT_PREFIX = "/";
 
-    private static final Pattern MANLE_NAMESPACE_OUT_PATTERN = Pattern.compile("/([^:/]+):");
+    /** The maximum number of remembered candidates which are not a namespace prefix. */
+    static final int MAX_NON_PREFIXES = 1000;
+
+    /** The registered namespace prefixes, {@code null} until read from a session. */
+    private volatile Set<String> prefixes;
 
+    /** Candidates which are not a registered namespace prefix. */
+    private final Set<String> nonPrefixes = ConcurrentHashMap.newKeySet();
 
     public String mangleNamespaces(ResourceResolver resolver, Logger logger, String absPath) {
-        if (absPath.contains(MANGLE_NAMESPACE_OUT_SUFFIX)) {
+        if (absPath.indexOf(MANGLE_NAMESPACE_OUT_SUFFIX) != -1) {
             final Session session = resolver.adaptTo(Session.class);
             if ( session != null ) {
-                final Matcher m = MANLE_NAMESPACE_OUT_PATTERN.matcher(absPath);
-
-                final StringBuffer buf = new StringBuffer();
-                while (m.find()) {
-                    final String namespace = m.group(1);
-                    try {
-
-                        // throws if "namespace" is not a registered
-                        // namespace prefix
-                        session.getNamespaceURI(namespace);
-                        final String replacement = MANGLE_NAMESPACE_IN_PREFIX + namespace + MANGLE_NAMESPACE_IN_SUFFIX;
-                        m.appendReplacement(buf, replacement);
-
-
-                    } catch (final NamespaceException ne) {
-
-                        // not a valid prefix
-                        logger.debug("mangleNamespaces: '{}' is not a prefix, not mangling", namespace);
-
-                    } catch (final RepositoryException re) {
-
-                        logger.warn("mangleNamespaces: Problem checking namespace '{}'", namespace, re);
-
-                    }
-                }
-
-                m.appendTail(buf);
-
-                absPath = buf.toString();
+                absPath = replace(session, logger, absPath,
+                        MANGLE_NAMESPACE_OUT_PREFIX, MANGLE_NAMESPACE_OUT_SUFFIX,
+                        MANGLE_NAMESPACE_IN_PREFIX, MANGLE_NAMESPACE_IN_SUFFIX);
             }
         }
 
@@ -86,35 +80,95 @@ public class JcrNamespaceMangler {
         if (absPath.contains(MANGLE_NAMESPACE_IN_PREFIX)) {
             final Session session = resolver.adaptTo(Session.class);
             if ( session != null ) {
-                final Matcher m = MANGLE_NAMESPACE_IN_PATTERN.matcher(absPath);
-                final StringBuffer buf = new StringBuffer();
-                while (m.find()) {
-                    final String namespace = m.group(1);
-                    try {
+                absPath = replace(session, logger, absPath,
+                        MANGLE_NAMESPACE_IN_PREFIX, MANGLE_NAMESPACE_IN_SUFFIX,
+                        MANGLE_NAMESPACE_OUT_PREFIX, MANGLE_NAMESPACE_OUT_SUFFIX);
+            }
+        }
 
-                        // throws if "namespace" is not a registered
-                        // namespace prefix
-                        session.getNamespaceURI(namespace);
-                        final String replacement = MANGLE_NAMESPACE_OUT_PREFIX + namespace + MANGLE_NAMESPACE_OUT_SUFFIX;
-                        m.appendReplacement(buf, replacement);
+        return absPath;
+    }
 
+    /**
+     * Replace all occurrences of {@code <fromPrefix>namespace<fromSuffix>} with
+     * {@code <toPrefix>namespace<toSuffix>} if namespace is a registered namespace
+     * prefix. The namespace must neither contain a slash nor the suffix.
+     * @return The path itself if nothing has been replaced
+     */
+    private String replace(final Session session, final Logger logger, final String absPath,
+            final String fromPrefix, final char fromSuffix,
+            final String toPrefix, final char toSuffix) {
+        final int length = absPath.length();
+        StringBuilder buf = null;
+        int copied = 0;
+        int pos = absPath.indexOf(fromPrefix);
+        while (pos != -1) {
+            final int start = pos + fromPrefix.length();
+            int end = start;
+            while (end < length && absPath.charAt(end) != fromSuffix && absPath.charAt(end) != '/') {
+                end++;
+            }
+            if (end > start && end < length && absPath.charAt(end) == fromSuffix) {
+                final String namespace = absPath.substring(start, end);
+                if (isNamespacePrefix(session, logger, namespace)) {
+                    if (buf == null) {
+                        buf = new StringBuilder(length + 1);
+                    }
+                    buf.append(absPath, copied, pos).append(toPrefix).append(namespace).append(toSuffix);
+                    copied = end + 1;
+                    pos = absPath.indexOf(fromPrefix, copied);
+                    continue;
+                }
+            }
+            pos = absPath.indexOf(fromPrefix, pos + 1);
+        }
+        if (buf == null) {
+            return absPath;
+        }
+        return buf.append(absPath, copied, length).toString();
+    }
 
-                    } catch (final NamespaceException ne) {
+    private boolean isNamespacePrefix(final Session session, final Logger logger, final String namespace) {
+        final Set<String> known = this.prefixes;
+        if (known != null && known.contains(namespace)) {
+            return true;
+        }
+        if (this.nonPrefixes.contains(namespace)) {
+            return false;
+        }
+        try {
 
-                        // not a valid prefix
-                        logger.debug("unmangleNamespaces: '{}' is not a prefix, not unmangling", namespace);
+            // throws if "namespace" is not a registered
+            // namespace prefix
+            session.getNamespaceURI(namespace);
 
-                    } catch (final RepositoryException re) {
+            // registered since the prefixes have been read
+            this.prefixes = readPrefixes(session);
+            this.nonPrefixes.clear();
+            return true;
 
-                        logger.warn("unmangleNamespaces: Problem checking namespace '{}'", namespace, re);
+        } catch (final NamespaceException ne) {
 
-                    }
-                }
-                m.appendTail(buf);
-                absPath = buf.toString();
+            // not a valid prefix
+            logger.debug("'{}' is not a namespace prefix, not mangling", namespace);
+            if (this.nonPrefixes.size() >= MAX_NON_PREFIXES) {
+                this.nonPrefixes.clear();
             }
+            this.nonPrefixes.add(namespace);
+
+        } catch (final RepositoryException re) {
+
+            logger.warn("Problem checking namespace '{}'", namespace, re);
+
         }
+        return false;
+    }
 
-        return absPath;
+    private static Set<String> readPrefixes(final Session session) throws RepositoryException {
+        final String[] registered = session.getNamespacePrefixes();
+        if (registered == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(registered));
     }
 }
@@ -34,6 +34,7 @@ import org.apache.sling.api.resource.runtime.RuntimeService;
 import org.apache.sling.resourceresolver.impl.helper.ResourceDecoratorTracker;
 import org.apache.sling.resourceresolver.impl.mapping.Mapping;
 import org.apache.sling.resourceresolver.impl.mapping.StringInterpolationProvider;
+import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerDispatcher;
 import org.apache.sling.resourceresolver.impl.observation.ResourceChangeListenerWhiteboard;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker.ChangeListener;
@@ -212,10 +213,26 @@ public class ResourceResolverFactoryActivator {
         return this.config.resource_resolver_vanitypath_cache_in_background();
     }
 
+    public boolean isParallelProviderAuthentication() {
+        return this.config.resource_resolver_providerhandling_parallel_authentication();
+    }
+
+    public long getSlowResolutionThreshold() {
+        return this.config.resource_resolver_slow_resolution_threshold();
+    }
+
+    public int getSlowResolutionTraces() {
+        return this.config.resource_resolver_slow_resolution_traces();
+    }
+
     public boolean isOptimizeAliasResolutionEnabled() {
         return this.config.resource_resolver_optimize_alias_resolution();
     }
 
+    public boolean isAliasCacheInitInBackground() {
+        return this.config.resource_resolver_alias_cache_in_background();
+    }
+
     public  Set<String> getAllowedAliasLocations(){
         return this.allowedAliasLocations;
     }
@@ -418,7 +435,11 @@ public class ResourceResolverFactoryActivator {
             		requiredResourceProviderNames,
             		resourceProviderTracker);
             this.changeListenerWhiteboard.activate(this.bundleContext,
-                this.resourceProviderTracker, searchPath);
+                this.resourceProviderTracker, searchPath,
+                config.resource_resolver_observation_async()
+                    ? new ResourceChangeListenerDispatcher(searchPath, config.resource_resolver_observation_async_queue_size(), this::getResourceResolverMetrics)
+                    : null,
+                this::getResourceResolverMetrics);
             this.resourceProviderTracker.activate(this.bundleContext,
                     this.eventAdmin,
                     new ChangeListener() {
@@ -153,6 +153,11 @@ public @interface ResourceResolverFactoryConfig {
                      " and on the alias update time if the number of aliases is huge (over 10000).")
     boolean resource_resolver_optimize_alias_resolution() default true;
 
+    @AttributeDefinition(name = "Alias Cache Init In Background",
+        description = "This flag controls whether the cache of aliases for the optimized alias resolution will be initialized " +
+                      "immediately or later as a background task. Until it is initialized, aliases are resolved without the cache.")
+    boolean resource_resolver_alias_cache_in_background() default false;
+
     @AttributeDefinition(name = "Allowed Optimized Alias Locations",
          description = "This setting can contain a list of path prefixes, e.g. /libs/, /content/. If " +
                  "such a list is configured, for alias optimization, only paths from resources starting with this prefix " +
@@ -183,6 +188,33 @@ public @interface ResourceResolverFactoryConfig {
                       + "for memory leaks caused by objects hold from that resource provider.")
     boolean resource_resolver_providerhandling_paranoid() default false;
 
+    @AttributeDefinition(name = "Parallel Provider Authentication",
+        description = "If this flag is enabled, the resource providers requiring authentication are "
+                      + "authenticated concurrently when a resource resolver is created. This reduces "
+                      + "the time to create a resource resolver if several providers need to authenticate, "
+                      + "for example against remote systems.")
+    boolean resource_resolver_providerhandling_parallel_authentication() default false;
+
+    @AttributeDefinition(name = "Asynchronous Resource Change Delivery",
+        description = "If this flag is enabled, resource changes are delivered to each resource change listener "
+                      + "from its own queue in the background. A slow listener does then not delay other listeners.")
+    boolean resource_resolver_observation_async() default false;
+
+    @AttributeDefinition(name = "Resource Change Queue Size",
+        description = "The maximum number of queued change lists per resource change listener if changes are "
+                      + "delivered asynchronously. If the queue is full, new changes are merged into the last queued list.")
+    int resource_resolver_observation_async_queue_size() default 1000;
+
+    @AttributeDefinition(name = "Slow Resolution Threshold",
+        description = "If set to a value higher than zero, resolve and map calls taking at least this number of "
+                      + "milliseconds are traced with the time spent in each stage. The slowest traces are listed "
+                      + "in the web console.")
+    long resource_resolver_slow_resolution_threshold() default 0;
+
+    @AttributeDefinition(name = "Slow Resolution Traces",
+        description = "The number of traces of the slowest resolve and map calls kept if tracing is enabled.")
+    int resource_resolver_slow_resolution_traces() default 20;
+
     @AttributeDefinition(name = "Log resource resolver closing",
         description = "When enabled CRUD operations with a closed resource resolver will log a stack trace " +
                       "with the point where the used resolver was closed. It's advisable to not enable this feature on " +
@@ -52,6 +52,9 @@ import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ResourceWrapper;
 import org.apache.sling.api.resource.mapping.ResourceMapper;
 import org.apache.sling.resourceresolver.impl.helper.RedirectResource;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace.Stage;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTracer;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIteratorDecorator;
 import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
@@ -109,7 +112,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
     ResourceResolverImpl(final CommonResourceResolverFactoryImpl factory, final boolean isAdmin, final Map<String, Object> authenticationInfo, final ResourceProviderStorageProvider resourceProviderTracker) throws LoginException {
         this.factory = factory;
-        this.context = new ResourceResolverContext(this, factory.getResourceAccessSecurityTracker());
+        this.context = new ResourceResolverContext(this, factory.getResourceAccessSecurityTracker(), factory.getResourceResolverMetrics());
         this.control = createControl(resourceProviderTracker, authenticationInfo, isAdmin);
         this.factory.register(this, control);
     }
@@ -130,7 +133,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             authInfo.putAll(authenticationInfo);
         }
         authInfo.put(ResourceProvider.AUTH_CLONE, true);
-        this.context = new ResourceResolverContext(this, factory.getResourceAccessSecurityTracker());
+        this.context = new ResourceResolverContext(this, factory.getResourceAccessSecurityTracker(), factory.getResourceResolverMetrics());
         this.control = createControl(factory.getResourceProviderTracker(), authInfo, resolver.control.isAdmin());
         this.factory.register(this, control);
     }
@@ -149,7 +152,8 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     throws LoginException {
         final ResourceResolverControl control = new ResourceResolverControl(isAdmin, authenticationInfo, resourceProviderTracker);
 
-        this.context.getProviderManager().authenticateAll(resourceProviderTracker.getResourceProviderStorage().getAuthRequiredHandlers(), control);
+        this.context.getProviderManager().authenticateAll(resourceProviderTracker.getResourceProviderStorage().getAuthRequiredHandlers(), control,
+                this.factory.getProviderAuthenticationExecutor());
 
         return control;
     }
@@ -281,7 +285,25 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         return rsrc;
     }
 
-    private Resource resolveInternal(final HttpServletRequest request, String absPath) {
+    private Resource resolveInternal(final HttpServletRequest request, final String absPath) {
+        final ResolutionTracer tracer = this.factory.getResolutionTracer();
+        final long start = this.context.startOperation();
+        if ( start == 0 && tracer == null ) {
+            return this.resolveRequestPath(request, absPath, null);
+        }
+        final ResolutionTrace trace = tracer != null ? tracer.start(ResourceResolverControl.OPERATION_RESOLVE, absPath) : null;
+        final Resource rsrc = this.resolveRequestPath(request, absPath, trace);
+        if ( tracer != null ) {
+            tracer.finish(trace);
+        }
+        if ( start != 0 ) {
+            this.context.endOperation(ResourceResolverControl.OPERATION_RESOLVE,
+                    this.control.getProviderName(rsrc != null ? rsrc.getPath() : absPath), start);
+        }
+        return rsrc;
+    }
+
+    private Resource resolveRequestPath(final HttpServletRequest request, String absPath, @Nullable final ResolutionTrace trace) {
         // make sure abspath is not null and is absolute
         if (absPath == null) {
             absPath = "/";
@@ -307,11 +329,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         // content out of the virtual host mapping tree
         // the counter is to ensure we are not caught in an endless loop here
         // TODO: might do better to be able to log the loop and help the user
+        final long mapEntriesStart = trace != null ? System.nanoTime() : 0;
         for (int i = 0; i < 100; i++) {
 
             String[] mappedPath = null;
 
-            final Iterator<MapEntry> mapEntriesIterator = this.factory.getMapEntries().getResolveMapsIterator(requestPath);
+            final Iterator<MapEntry> mapEntriesIterator = this.factory.getMapEntries().getResolveMapsIterator(requestPath, trace);
             while (mapEntriesIterator.hasNext()) {
                 final MapEntry mapEntry = mapEntriesIterator.next();
                 mappedPath = mapEntry.replace(requestPath);
@@ -327,8 +350,10 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
                     // external redirect
                     logger.debug("resolve: Returning external redirect");
-                    return this.factory.getResourceDecoratorTracker().decorate(
-                            new RedirectResource(this, absPath, mappedPath[0], mapEntry.getStatus()));
+                    if ( trace != null ) {
+                        trace.addStageTime(Stage.MAP_ENTRIES, mapEntriesStart);
+                    }
+                    return decorate(new RedirectResource(this, absPath, mappedPath[0], mapEntry.getStatus()), trace);
                 }
             }
 
@@ -359,15 +384,22 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
                 throw new ResourceNotFoundException(absPath);
             }
         }
+        if ( trace != null ) {
+            trace.addStageTime(Stage.MAP_ENTRIES, mapEntriesStart);
+        }
 
         // now we have the real path resolved from virtual host mapping
         // this path may be absolute or relative, in which case we try
         // to resolve it against the search path
 
         Resource res = null;
+        ParsedParameters firstParsedPath = null;
         for (int i = 0; res == null && i < realPathList.length; i++) {
             final ParsedParameters parsedPath = new ParsedParameters(realPathList[i]);
             final String realPath = parsedPath.getRawPath();
+            if (i == 0) {
+                firstParsedPath = parsedPath;
+            }
 
 
             // first check whether the requested resource is a StarResource
@@ -381,13 +413,13 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
                     // let's check it with a direct access first
                     logger.debug("resolve: Try absolute mapped path {}", realPath);
-                    res = resolveInternal(realPath, parsedPath.getParameters());
+                    res = resolveInternal(realPath, parsedPath, trace);
 
                 } else {
 
                     for(final String path : factory.getSearchPath()) {
                         logger.debug("resolve: Try relative mapped path with search path entry {}", path);
-                        res = resolveInternal(path + realPath, parsedPath.getParameters());
+                        res = resolveInternal(path + realPath, parsedPath, trace);
                         if ( res != null ) {
                             break;
                         }
@@ -399,7 +431,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
         // if no resource has been found, use a NonExistingResource
         if (res == null) {
-            final ParsedParameters parsedPath = new ParsedParameters(realPathList[0]);
+            final ParsedParameters parsedPath = firstParsedPath;
             final String resourcePath = ensureAbsPath(parsedPath.getRawPath());
             logger.debug("resolve: Path {} does not resolve, returning NonExistingResource at {}", absPath, resourcePath);
 
@@ -409,7 +441,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             // used for further request processing.
             // the resolution path must be the full path and is already set within
             // the non existing resource
-            final int index = resourcePath.indexOf('.');
+            final int index;
+            if (resourcePath.length() == parsedPath.getRawPath().length()) {
+                index = parsedPath.getDots().length > 0 ? parsedPath.getDots()[0] : -1;
+            } else {
+                index = resourcePath.indexOf('.');
+            }
             if (index != -1) {
                 res.getResourceMetadata().setResolutionPathInfo(resourcePath.substring(index));
             }
@@ -418,7 +455,23 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             logger.debug("resolve: Path {} resolves to Resource {}", absPath, res);
         }
 
-        return this.factory.getResourceDecoratorTracker().decorate(res);
+        return decorate(res, trace);
+    }
+
+    /**
+     * Apply the resource decorators
+     * @param resource The resource
+     * @param trace The trace or {@code null}
+     * @return The decorated resource
+     */
+    private Resource decorate(final Resource resource, @Nullable final ResolutionTrace trace) {
+        if ( trace == null ) {
+            return this.factory.getResourceDecoratorTracker().decorate(resource);
+        }
+        final long start = System.nanoTime();
+        final Resource decorated = this.factory.getResourceDecoratorTracker().decorate(resource);
+        trace.addStageTime(Stage.DECORATION, start);
+        return decorated;
     }
 
     /**
@@ -442,7 +495,12 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public String map(final HttpServletRequest request, final String resourcePath) {
-        return adaptTo(ResourceMapper.class).getMapping(resourcePath, request);
+        final long start = this.context.startOperation();
+        final String mapping = adaptTo(ResourceMapper.class).getMapping(resourcePath, request);
+        if ( start != 0 ) {
+            this.context.endOperation(ResourceResolverControl.OPERATION_MAP, this.control.getProviderName(resourcePath), start);
+        }
+        return mapping;
     }
 
     // ---------- search path for relative resoures
@@ -650,7 +708,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         
         if ( type == ResourceMapper.class )
             return (AdapterType) new ResourceMapperImpl(this, factory.getResourceDecoratorTracker(), factory.getMapEntries(), 
-                    factory.getNamespaceMangler());
+                    factory.getNamespaceMangler(), factory.getResolutionTracer());
         
         final AdapterType result = this.control.adaptTo(this.context, type);
         if ( result != null ) {
@@ -714,14 +772,49 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      *         the {@link ResourcePathIterator} to resolve the resource.
      */
     public Resource resolveInternal(final String absPath, final Map<String, String> parameters) {
+        return resolveInternal(absPath, parameters, null);
+    }
+
+    /**
+     * Internal method used by the {@link #resolveInternal(String, Map)} method
+     * and the {@link ResourceMapperImpl}, recording the time spent in the
+     * stages of the resolution.
+     *
+     * @param absPath The absolute path of the resource to return.
+     * @param parameters The parameters
+     * @param trace The trace or {@code null}
+     * @return The resource found or <code>null</code>
+     */
+    public Resource resolveInternal(final String absPath, final Map<String, String> parameters, @Nullable final ResolutionTrace trace) {
+        return resolveInternal(absPath, parameters, trace, new ResourcePathIterator(absPath));
+    }
+
+    /**
+     * Internal method used by the {@link #resolveInternal(String, Map)} method
+     * and the {@link ResourceMapperImpl}, reusing the positions of the dots
+     * found while parsing the parameters.
+     *
+     * @param absPath The absolute path of the resource to return, ending with
+     *            the raw path of the parsed path
+     * @param parsedPath The parsed path
+     * @param trace The trace or {@code null}
+     * @return The resource found or <code>null</code>
+     */
+    public Resource resolveInternal(final String absPath, final ParsedParameters parsedPath, @Nullable final ResolutionTrace trace) {
+        return resolveInternal(absPath, parsedPath.getParameters(), trace,
+                new ResourcePathIterator(absPath, parsedPath.getDots(), absPath.length() - parsedPath.getRawPath().length()));
+    }
+
+    private Resource resolveInternal(final String absPath, final Map<String, String> parameters, @Nullable final ResolutionTrace trace,
+            final ResourcePathIterator it) {
         Resource resource = null;
         if (absPath != null && !absPath.isEmpty() && !absPath.startsWith("/")) {
             logger.debug("resolveInternal: absolute path expected {} ",absPath);
             return resource; // resource is null at this point
         }
         String curPath = absPath;
+        final long candidatesStart = trace != null ? System.nanoTime() : 0;
         try {
-            final ResourcePathIterator it = new ResourcePathIterator(absPath);
             while (it.hasNext() && resource == null) {
                 curPath = it.next();
                 resource = getAbsoluteResourceInternal(null, curPath, parameters, true);
@@ -729,6 +822,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         } catch (final Exception ex) {
             throw new SlingException("Problem trying " + curPath + " for request path " + absPath, ex);
         }
+        if ( trace != null ) {
+            trace.addStageTime(Stage.PATH_CANDIDATES, candidatesStart);
+        }
 
         // SLING-627: set the part cut off from the uriPath as
         // sling.resolutionPathInfo property such that
@@ -744,6 +840,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
         } else {
 
+            final long aliasesStart = trace != null ? System.nanoTime() : 0;
             String tokenizedPath = absPath;
 
             // no direct resource found, so we have to drill down into the
@@ -809,6 +906,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
                 logger.debug("resolveInternal: Found resource {} with path info {} for {}", new Object[] { resource, pathInfo,
                         absPath });
             }
+            if ( trace != null ) {
+                trace.addStageTime(Stage.ALIASES, aliasesStart);
+            }
         }
 
         return resource;
@@ -1043,10 +1143,15 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
     /**
      * @see org.apache.sling.api.resource.ResourceResolver#hasChildren()
      */
-	@Override
-    public boolean hasChildren(Resource resource) {
-		return listChildren(resource).hasNext();
-	}
+    @Override
+    public boolean hasChildren(final Resource resource) {
+        checkClosed();
+
+        if (resource instanceof ResourceWrapper) {
+            return hasChildren(((ResourceWrapper) resource).getResource());
+        }
+        return this.control.hasChildren(this.context, resource);
+    }
 
     /**
      * @see org.apache.sling.api.resource.ResourceResolver#getParentResourceType(org.apache.sling.api.resource.Resource)
@@ -18,19 +18,32 @@
  */
 package org.apache.sling.resourceresolver.impl;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.apache.sling.commons.metrics.Counter;
 import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.Meter;
 import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
 
 /**
  *  Export metrics for the resource resolver bundle:
@@ -40,15 +53,57 @@ import org.osgi.service.component.annotations.Reference;
  *  org.apache.sling.resourceresolver.numberOfVanityPathBloomNegatives -- the total number of vanity path lookups filtered by the bloom filter
  *  org.apache.sling.resourceresolver.numberOfVanityPathBloomFalsePositives -- the total number of vanity path lookup that passed the bloom filter but were false positives
  *  org.apache.sling.resourceresolver.numberOfAliases -- the total number of aliases
+ *  org.apache.sling.resourceresolver.numberOfQueuedOsgiEvents -- the number of resource changes waiting to be sent as OSGi events
+ *  org.apache.sling.resourceresolver.numberOfDroppedOsgiEvents -- the number of resource changes dropped as the OSGi event queue was full
  *  org.apache.sling.resourceresolver.unclosedResourceResolvers -- the total number of unclosed resource resolvers
+ *  org.apache.sling.resourceresolver.resourceAccessSecurityFiltering -- the time spent filtering resources through the resource access security services
+ *  org.apache.sling.resourceresolver.resourceAccessSecurityChecks -- the number of resources filtered through the resource access security services
+ *  org.apache.sling.resourceresolver.providerAuthentication.&lt;provider&gt; -- the time spent authenticating against a resource provider
+ *  org.apache.sling.resourceresolver.resourceChangeListener.queueDepth.&lt;listener&gt; -- the queue depth of an asynchronous resource change listener
+ *  org.apache.sling.resourceresolver.resourceChangeListener.lag.&lt;listener&gt; -- the time changes are queued for an asynchronous resource change listener
+ *  org.apache.sling.resourceresolver.resourceChangeListener.processing.&lt;listener&gt; -- the time a resource change listener takes to process changes
+ *  org.apache.sling.resourceresolver.resourceChangeListener.changes.&lt;listener&gt; -- the number of changes delivered to a resource change listener
+ *  org.apache.sling.resourceresolver.observation.reporting.&lt;provider&gt; -- the time spent reporting changes of a resource provider
+ *  org.apache.sling.resourceresolver.observation.changes.&lt;provider&gt; -- the number of changes reported by a resource provider
+ *  org.apache.sling.resourceresolver.osgiEvents -- the time spent sending a batch of OSGi events for resource changes
+ *  org.apache.sling.resourceresolver.numberOfOsgiEvents -- the number of OSGi events sent for resource changes
+ *  org.apache.sling.resourceresolver.mapEntriesLockHeld -- the time the map entries lock is held while processing resource changes
+ *  org.apache.sling.resourceresolver.operation.&lt;operation&gt;.&lt;provider&gt; -- the time taken by a resource resolver operation
+ *      (resolve, map, getResource, listChildren, findResources, commit) handled by a resource provider, only recorded if enabled
+ *  org.apache.sling.resourceresolver.providerCalls.&lt;provider&gt; -- the time taken by calls to a resource provider, only recorded if enabled
+ *  org.apache.sling.resourceresolver.providerErrors.&lt;provider&gt; -- the number of failed calls to a resource provider, only recorded if enabled
+ *  org.apache.sling.resourceresolver.numberOfOpenResourceResolvers -- the number of currently open resource resolvers
+ *  org.apache.sling.resourceresolver.resourceResolvers.opened.&lt;type&gt; -- the rate of opened resource resolvers (admin, service or user)
+ *  org.apache.sling.resourceresolver.resourceResolvers.lifetime -- the time from opening to closing a resource resolver
+ *  org.apache.sling.resourceresolver.resourceResolvers.authentication -- the time spent authenticating a resource resolver against all resource providers
+ *  org.apache.sling.resourceresolver.numberOfSkippedResourceDecorators -- the number of resource decorators not called as they don't apply to the resource
+ *  org.apache.sling.resourceresolver.aliasCacheReady -- 1 if the alias cache is loaded and used, 0 while it is initialized in the background, if loading failed or if it is disabled
  *
+ *  Metrics with a listener or provider in their name are created for at most
+ *  {@value #MAX_NAMES} different names per metric, further names are reported as {@value #OTHER_NAME}.
  */
 
 
 @Component(service=ResourceResolverMetrics.class)
+@Designate(ocd = ResourceResolverMetricsConfiguration.class)
 public class ResourceResolverMetrics {
     
     protected static final String METRICS_PREFIX = "org.apache.sling.resourceresolver";
+
+    /** Maximum number of names per metric with a listener or provider in its name */
+    static final int MAX_NAMES = 200;
+
+    /** Name used once {@link #MAX_NAMES} is exceeded */
+    static final String OTHER_NAME = "other";
+
+    /** Type of an administrative resource resolver */
+    public static final String RESOLVER_TYPE_ADMIN = "admin";
+
+    /** Type of a service resource resolver */
+    public static final String RESOLVER_TYPE_SERVICE = "service";
+
+    /** Type of a resource resolver for a user */
+    public static final String RESOLVER_TYPE_USER = "user";
     
     @Reference
     MetricsService metricsService;
@@ -74,18 +129,88 @@ public class ResourceResolverMetrics {
     // number of aliases
     private ServiceRegistration<Gauge<Long>> numberOfAliasesGauge;
     private Supplier<Long> numberOfAliasesSupplier = ZERO_SUPPLIER;
+
+    // number of resource changes queued for the OSGi event bridge
+    private ServiceRegistration<Gauge<Long>> numberOfQueuedOsgiEventsGauge;
+    private Supplier<Long> numberOfQueuedOsgiEventsSupplier = ZERO_SUPPLIER;
+
+    // number of resource changes dropped by the OSGi event bridge
+    private ServiceRegistration<Gauge<Long>> numberOfDroppedOsgiEventsGauge;
+    private Supplier<Long> numberOfDroppedOsgiEventsSupplier = ZERO_SUPPLIER;
+
+    // number of open resource resolvers
+    private ServiceRegistration<Gauge<Long>> numberOfOpenResourceResolversGauge;
+    private Supplier<Long> numberOfOpenResourceResolversSupplier = ZERO_SUPPLIER;
+
+    // number of resource decorators skipped for a resource
+    private ServiceRegistration<Gauge<Long>> numberOfSkippedResourceDecoratorsGauge;
+    private Supplier<Long> numberOfSkippedResourceDecoratorsSupplier = ZERO_SUPPLIER;
+
+    // whether the alias cache is ready
+    private ServiceRegistration<Gauge<Long>> aliasCacheReadyGauge;
+    private Supplier<Long> aliasCacheReadySupplier = ZERO_SUPPLIER;
     
     private Counter unclosedResourceResolvers;
+
+    // lifecycle of the resource resolvers
+    private Timer resourceResolverLifetimeTimer;
+    private Timer resourceResolverAuthenticationTimer;
+
+    // filtering through the resource access security services
+    private Timer resourceAccessSecurityFilteringTimer;
+    private Meter resourceAccessSecurityChecksMeter;
+
+    // observation
+    private Timer osgiEventsTimer;
+    private Meter numberOfOsgiEventsMeter;
+    private Timer mapEntriesLockHeldTimer;
+
+    // timing of resource resolver operations, switchable at runtime
+    private volatile boolean operationTimersEnabled;
+
+    // calls to the resource providers, switchable at runtime
+    private volatile boolean providerCallMetricsEnabled;
+    private final Map<String, ProviderCallCounter> providerCalls = new ConcurrentHashMap<>();
+
+    // metrics with dynamic names, e.g. per listener or provider, by type and name
+    private final Map<String, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Meter>> meters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Histogram>> histograms = new ConcurrentHashMap<>();
+    // type of the operation timers per operation, to avoid building it per call
+    private final Map<String, String> operationTypes = new ConcurrentHashMap<>();
     
     
     @Activate
-    protected void activate(BundleContext bundleContext) {
+    protected void activate(BundleContext bundleContext, ResourceResolverMetricsConfiguration config) {
+        operationTimersEnabled = config.operation_timers_enabled();
+        providerCallMetricsEnabled = config.provider_call_metrics_enabled();
         numberOfVanityPathsGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfVanityPaths", () -> numberOfVanityPathsSupplier );
         numberOfVanityPathLookupsGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfVanityPathLookups", () -> numberOfVanityPathLookupsSupplier );
         numberOfVanityPathBloomNegativeGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfVanityPathBloomNegatives", () -> numberOfVanityPathBloomNegativeSupplier );
         numberOfVanityPathBloomFalsePositiveGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfVanityPathBloomFalsePositives", () -> numberOfVanityPathBloomFalsePositiveSupplier );
         numberOfAliasesGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfAliases", () -> numberOfAliasesSupplier );
+        numberOfQueuedOsgiEventsGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfQueuedOsgiEvents", () -> numberOfQueuedOsgiEventsSupplier );
+        numberOfDroppedOsgiEventsGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfDroppedOsgiEvents", () -> numberOfDroppedOsgiEventsSupplier );
+        numberOfOpenResourceResolversGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfOpenResourceResolvers", () -> numberOfOpenResourceResolversSupplier );
+        numberOfSkippedResourceDecoratorsGauge = registerGauge(bundleContext, METRICS_PREFIX + ".numberOfSkippedResourceDecorators", () -> numberOfSkippedResourceDecoratorsSupplier );
+        aliasCacheReadyGauge = registerGauge(bundleContext, METRICS_PREFIX + ".aliasCacheReady", () -> aliasCacheReadySupplier );
         unclosedResourceResolvers = metricsService.counter(METRICS_PREFIX  + ".unclosedResourceResolvers");
+        resourceAccessSecurityFilteringTimer = metricsService.timer(METRICS_PREFIX + ".resourceAccessSecurityFiltering");
+        resourceAccessSecurityChecksMeter = metricsService.meter(METRICS_PREFIX + ".resourceAccessSecurityChecks");
+        osgiEventsTimer = metricsService.timer(METRICS_PREFIX + ".osgiEvents");
+        numberOfOsgiEventsMeter = metricsService.meter(METRICS_PREFIX + ".numberOfOsgiEvents");
+        mapEntriesLockHeldTimer = metricsService.timer(METRICS_PREFIX + ".mapEntriesLockHeld");
+        resourceResolverLifetimeTimer = metricsService.timer(METRICS_PREFIX + ".resourceResolvers.lifetime");
+        resourceResolverAuthenticationTimer = metricsService.timer(METRICS_PREFIX + ".resourceResolvers.authentication");
+        for (String type : new String[] {RESOLVER_TYPE_ADMIN, RESOLVER_TYPE_SERVICE, RESOLVER_TYPE_USER}) {
+            getMeter(".resourceResolvers.opened.", type);
+        }
+    }
+
+    @Modified
+    protected void modified(ResourceResolverMetricsConfiguration config) {
+        operationTimersEnabled = config.operation_timers_enabled();
+        providerCallMetricsEnabled = config.provider_call_metrics_enabled();
     }
 
     @Deactivate
@@ -95,6 +220,11 @@ public class ResourceResolverMetrics {
         numberOfVanityPathBloomNegativeGauge.unregister();
         numberOfVanityPathBloomFalsePositiveGauge.unregister();
         numberOfAliasesGauge.unregister();
+        numberOfQueuedOsgiEventsGauge.unregister();
+        numberOfDroppedOsgiEventsGauge.unregister();
+        numberOfOpenResourceResolversGauge.unregister();
+        numberOfSkippedResourceDecoratorsGauge.unregister();
+        aliasCacheReadyGauge.unregister();
     }
 
     /**
@@ -136,6 +266,46 @@ public class ResourceResolverMetrics {
     public void setNumberOfAliasesSupplier(Supplier<Long> supplier) {
         numberOfAliasesSupplier = supplier;
     }
+
+    /**
+     * Set the number of resource changes waiting to be sent as OSGi events
+     * @param supplier a supplier returning the number of queued changes
+     */
+    public void setNumberOfQueuedOsgiEventsSupplier(Supplier<Long> supplier) {
+        numberOfQueuedOsgiEventsSupplier = supplier;
+    }
+
+    /**
+     * Set the number of resource changes dropped as the OSGi event queue was full
+     * @param supplier a supplier returning the number of dropped changes
+     */
+    public void setNumberOfDroppedOsgiEventsSupplier(Supplier<Long> supplier) {
+        numberOfDroppedOsgiEventsSupplier = supplier;
+    }
+
+    /**
+     * Set the number of currently open resource resolvers
+     * @param supplier a supplier returning the number of open resource resolvers
+     */
+    public void setNumberOfOpenResourceResolversSupplier(Supplier<Long> supplier) {
+        numberOfOpenResourceResolversSupplier = supplier;
+    }
+
+    /**
+     * Set the number of resource decorators skipped as they don't apply to the resource
+     * @param supplier a supplier returning the number of skipped resource decorators
+     */
+    public void setNumberOfSkippedResourceDecoratorsSupplier(Supplier<Long> supplier) {
+        numberOfSkippedResourceDecoratorsSupplier = supplier;
+    }
+
+    /**
+     * Set whether the alias cache is ready
+     * @param supplier a supplier returning 1 if the alias cache is loaded and used, 0 otherwise
+     */
+    public void setAliasCacheReadySupplier(Supplier<Long> supplier) {
+        aliasCacheReadySupplier = supplier;
+    }
     
     /**
      * Increment the counter for the number of unresolved resource resolvers
@@ -143,6 +313,193 @@ public class ResourceResolverMetrics {
     public void reportUnclosedResourceResolver() {
         unclosedResourceResolvers.increment();
     }
+
+    /**
+     * Report an opened resource resolver
+     * @param type the type of the resource resolver, one of {@link #RESOLVER_TYPE_ADMIN},
+     *        {@link #RESOLVER_TYPE_SERVICE} or {@link #RESOLVER_TYPE_USER}
+     */
+    public void reportResourceResolverOpened(String type) {
+        getMeter(".resourceResolvers.opened.", type).mark();
+    }
+
+    /**
+     * Report a closed resource resolver
+     * @param lifetime the time the resource resolver was open in nanoseconds
+     */
+    public void reportResourceResolverClosed(long lifetime) {
+        resourceResolverLifetimeTimer.update(lifetime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the authentication of a resource resolver against all resource providers
+     * @param duration the time spent authenticating in nanoseconds
+     */
+    public void reportResourceResolverAuthentication(long duration) {
+        resourceResolverAuthenticationTimer.update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the resources of an iterator filtered through the resource access security services
+     * @param numberOfResources the number of resources checked
+     * @param duration the time spent filtering the resources in nanoseconds
+     */
+    public void reportResourceAccessSecurityFiltering(int numberOfResources, long duration) {
+        resourceAccessSecurityChecksMeter.mark(numberOfResources);
+        resourceAccessSecurityFilteringTimer.update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the authentication against a resource provider
+     * @param provider the name of the resource provider
+     * @param duration the time spent authenticating in nanoseconds
+     */
+    public void reportProviderAuthentication(String provider, long duration) {
+        getTimer(".providerAuthentication.", provider).update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the queue depth of an asynchronous resource change listener
+     * @param listener the name of the listener
+     * @param depth the number of queued change lists
+     */
+    public void reportResourceChangeListenerQueueDepth(String listener, int depth) {
+        getHistogram(".resourceChangeListener.queueDepth.", listener).update(depth);
+    }
+
+    /**
+     * Report the time changes were queued for an asynchronous resource change listener
+     * @param listener the name of the listener
+     * @param lag the time the changes were queued in nanoseconds
+     */
+    public void reportResourceChangeListenerLag(String listener, long lag) {
+        getTimer(".resourceChangeListener.lag.", listener).update(lag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the processing of changes by a resource change listener
+     * @param listener the name of the listener
+     * @param numberOfChanges the number of delivered changes
+     * @param processingTime the time spent by the listener in nanoseconds
+     */
+    public void reportResourceChangeListenerProcessing(String listener, int numberOfChanges, long processingTime) {
+        getMeter(".resourceChangeListener.changes.", listener).mark(numberOfChanges);
+        getTimer(".resourceChangeListener.processing.", listener).update(processingTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report changes reported by a resource provider
+     * @param provider the name of the provider
+     * @param numberOfChanges the number of reported changes
+     * @param duration the time spent reporting the changes in nanoseconds
+     */
+    public void reportObservationReporting(String provider, int numberOfChanges, long duration) {
+        getMeter(".observation.changes.", provider).mark(numberOfChanges);
+        getTimer(".observation.reporting.", provider).update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report a batch of OSGi events sent for resource changes
+     * @param numberOfEvents the number of events
+     * @param duration the time spent sending the events in nanoseconds
+     */
+    public void reportOsgiEvents(int numberOfEvents, long duration) {
+        numberOfOsgiEventsMeter.mark(numberOfEvents);
+        osgiEventsTimer.update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Report the time the map entries lock was held while processing resource changes
+     * @param duration the time in nanoseconds
+     */
+    public void reportMapEntriesLockHeld(long duration) {
+        mapEntriesLockHeldTimer.update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether the time taken by resource resolver operations should be reported
+     * @return {@code true} if operation timers are enabled
+     */
+    public boolean isOperationTimersEnabled() {
+        return operationTimersEnabled;
+    }
+
+    /**
+     * Report the time taken by a resource resolver operation
+     * @param operation the name of the operation, e.g. resolve or getResource
+     * @param provider the name of the resource provider handling the operation
+     * @param duration the time taken in nanoseconds
+     */
+    public void reportOperation(String operation, String provider, long duration) {
+        getTimer(operationTypes.computeIfAbsent(operation, op -> ".operation." + op + "."), provider).update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether calls to the resource providers should be reported
+     * @return {@code true} if provider call metrics are enabled
+     */
+    public boolean isProviderCallMetricsEnabled() {
+        return providerCallMetricsEnabled;
+    }
+
+    /**
+     * Report a call to a resource provider
+     * @param provider the name of the resource provider
+     * @param duration the time taken by the call in nanoseconds
+     * @param failed whether the call failed with an exception
+     */
+    public void reportProviderCall(String provider, long duration, boolean failed) {
+        getTimer(".providerCalls.", provider).update(duration, TimeUnit.NANOSECONDS);
+        if (failed) {
+            getMeter(".providerErrors.", provider).mark();
+        }
+        providerCalls.computeIfAbsent(provider, ProviderCallCounter::new).update(duration, failed);
+    }
+
+    /**
+     * Get the statistics of the calls to the resource providers since activation
+     * @return the statistics per provider, ordered by the total time taken, highest first
+     */
+    public List<ProviderCallStatistics> getProviderCallStatistics() {
+        List<ProviderCallStatistics> result = new ArrayList<>(providerCalls.size());
+        for (ProviderCallCounter counter : providerCalls.values()) {
+            result.add(new ProviderCallStatistics(counter.name, counter.calls.sum(), counter.errors.sum(), counter.time.sum()));
+        }
+        result.sort(Comparator.comparingLong(ProviderCallStatistics::getTotalTime).reversed());
+        return result;
+    }
+
+    private Timer getTimer(String type, String name) {
+        return getMetric(timers, type, name, metricsService::timer);
+    }
+
+    private Meter getMeter(String type, String name) {
+        return getMetric(meters, type, name, metricsService::meter);
+    }
+
+    private Histogram getHistogram(String type, String name) {
+        return getMetric(histograms, type, name, metricsService::histogram);
+    }
+
+    /**
+     * Get a metric with a dynamic name, creating it on first use. At most
+     * {@link #MAX_NAMES} names are used per type, further names are
+     * reported as {@link #OTHER_NAME}.
+     * @param metrics the metrics by type and name
+     * @param type the type, the prefix of the name of the metric
+     * @param name the name, e.g. of the listener or provider
+     * @param factory the factory creating the metric for its full name
+     * @return the metric
+     */
+    private static <M> M getMetric(Map<String, Map<String, M>> metrics, String type, String name, Function<String, M> factory) {
+        Map<String, M> byName = metrics.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+        M metric = byName.get(name);
+        if (metric == null) {
+            String key = byName.size() < MAX_NAMES ? name : OTHER_NAME;
+            metric = byName.computeIfAbsent(key, n -> factory.apply(METRICS_PREFIX + type + n));
+        }
+        return metric;
+    }
     
     /**
      * Create a gauge metrics.
@@ -163,6 +520,70 @@ public class ResourceResolverMetrics {
         return context.registerService(Gauge.class, gauge, props);
     }
 
+    /**
+     * Statistics of the calls to a resource provider
+     */
+    public static class ProviderCallStatistics {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final long totalTime;
+
+        ProviderCallStatistics(String name, long calls, long errors, long totalTime) {
+            this.name = name;
+            this.calls = calls;
+            this.errors = errors;
+            this.totalTime = totalTime;
+        }
+
+        /**
+         * @return the name of the resource provider
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of calls
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return the number of failed calls
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the total time taken by the calls in nanoseconds
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+    }
+
+    private static class ProviderCallCounter {
+        final String name;
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder time = new LongAdder();
+
+        ProviderCallCounter(String name) {
+            this.name = name;
+        }
+
+        void update(long duration, boolean failed) {
+            calls.increment();
+            time.add(duration);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
     public class ResourceResolverGauge implements Gauge<Long> {
         Supplier<Supplier<Long>> supplier;
 
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+@ObjectClassDefinition(
+    name = "Apache Sling Resource Resolver Metrics",
+    description = "Configures the metrics of the resource resolver"
+)
+public @interface ResourceResolverMetricsConfiguration {
+
+    @AttributeDefinition(
+        name = "Operation Timers",
+        description = "If enabled, the time taken by resolve, map, getResource, listChildren, findResources " +
+            "and commit is recorded per resource provider. The configuration can be changed at runtime " +
+            "to measure the overhead of the timers.")
+    boolean operation_timers_enabled() default false;
+
+    @AttributeDefinition(
+        name = "Resource Provider Call Metrics",
+        description = "If enabled, the number of calls, the number of failed calls and the time taken is " +
+            "recorded for each resource provider. The configuration applies immediately, also to resource resolvers which are already open.")
+    boolean provider_call_metrics_enabled() default false;
+}
@@ -25,12 +25,15 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
@@ -47,6 +50,10 @@ import org.apache.sling.api.resource.runtime.dto.ResourceProviderDTO;
 import org.apache.sling.api.resource.runtime.dto.ResourceProviderFailureDTO;
 import org.apache.sling.api.resource.runtime.dto.RuntimeDTO;
 import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics.ProviderCallStatistics;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTracer;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
 import org.apache.sling.resourceresolver.impl.mapping.MapEntriesHandler;
@@ -69,6 +76,8 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
     private static final String PAR_MSG = "msg";
     private static final String PAR_TEST = "test";
 
+    private static final String SLOW_RESOLUTIONS_JSON = "/slowresolutions.json";
+
     private final transient CommonResourceResolverFactoryImpl resolverFactory;
 
     private transient ServiceRegistration<Servlet> service;
@@ -109,6 +118,13 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
     protected void doGet(final HttpServletRequest request,
             final HttpServletResponse response) throws ServletException,
     IOException {
+        if ( request.getPathInfo() != null && request.getPathInfo().endsWith(SLOW_RESOLUTIONS_JSON) ) {
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            dumpSlowResolutionsJson(response.getWriter());
+            return;
+        }
+
         final String msg = request.getParameter(PAR_MSG);
         final String test;
         if (msg != null) {
@@ -204,6 +220,14 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
 
         dumpDTOsHtml(pw);
 
+        separatorHtml(pw);
+
+        dumpProviderCallsHtml(pw);
+
+        separatorHtml(pw);
+
+        dumpSlowResolutionsHtml(pw, request);
+
         pw.println("</table>");
 
     }
@@ -302,6 +326,10 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
     public void printConfiguration(final PrintWriter pw) {
         dumpDTOsText(pw);
 
+        dumpProviderCallsText(pw);
+
+        dumpSlowResolutionsText(pw);
+
         separatorText(pw);
 
         final MapEntriesHandler mapEntries = resolverFactory.getMapEntries();
@@ -583,6 +611,194 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         }
     }
 
+    /**
+     * Get the statistics of the provider calls
+     * @return The statistics or {@code null} if provider call metrics are not enabled
+     */
+    private List<ProviderCallStatistics> getProviderCallStatistics() {
+        final Optional<ResourceResolverMetrics> metrics = this.resolverFactory.getResourceResolverMetrics();
+        if ( metrics.isPresent() && metrics.get().isProviderCallMetricsEnabled() ) {
+            return metrics.get().getProviderCallStatistics();
+        }
+        return null;
+    }
+
+    private static String formatCallTime(final ProviderCallStatistics stats) {
+        final long total = TimeUnit.NANOSECONDS.toMillis(stats.getTotalTime());
+        final long average = stats.getCalls() == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.getTotalTime() / stats.getCalls());
+        return total + " ms (" + average + " \u00b5s per call)";
+    }
+
+    private void dumpProviderCallsHtml(final PrintWriter pw) {
+        final List<ProviderCallStatistics> statistics = getProviderCallStatistics();
+        if ( statistics == null ) {
+            titleHtml(pw, "Resource Provider Calls", "Provider call metrics are not enabled.");
+            return;
+        }
+        titleHtml(pw, "Resource Provider Calls", "Lists the resource providers by the total time taken by calls to them.");
+
+        pw.println("<tr class='content'>");
+        pw.println("<th class='content'>Provider</th>");
+        pw.println("<th class='content'>Calls (Errors)</th>");
+        pw.println("<th class='content'>Total Time</th>");
+        pw.println("</tr>");
+
+        for(final ProviderCallStatistics stats : statistics) {
+            pw.print("<tr class='content'>");
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(ResponseUtil.escapeXml(stats.getName()));
+            pw.print("</td>");
+
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(stats.getCalls());
+            pw.print(" (");
+            pw.print(stats.getErrors());
+            pw.print(")</td>");
+
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(ResponseUtil.escapeXml(formatCallTime(stats)));
+            pw.println("</td></tr>");
+        }
+    }
+
+    private void dumpProviderCallsText(final PrintWriter pw) {
+        final List<ProviderCallStatistics> statistics = getProviderCallStatistics();
+        if ( statistics == null ) {
+            return;
+        }
+        pw.println("Resource Provider Calls");
+
+        final String format = "%35s %25s %25s\r\n";
+        pw.printf(format, "Provider", "Calls (Errors)", "Total Time");
+        for(final ProviderCallStatistics stats : statistics) {
+            pw.printf(format, stats.getName(), stats.getCalls() + " (" + stats.getErrors() + ")", formatCallTime(stats));
+        }
+        pw.println();
+    }
+
+    private static String formatStages(final ResolutionTrace trace, final String separator) {
+        final StringBuilder sb = new StringBuilder();
+        for(final ResolutionTrace.Stage stage : ResolutionTrace.Stage.values()) {
+            if ( sb.length() > 0 ) {
+                sb.append(separator);
+            }
+            sb.append(stage.getName()).append('=').append(TimeUnit.NANOSECONDS.toMillis(trace.getStageTime(stage))).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    private void dumpSlowResolutionsHtml(final PrintWriter pw, final HttpServletRequest request) {
+        final ResolutionTracer tracer = this.resolverFactory.getResolutionTracer();
+        if ( tracer == null ) {
+            titleHtml(pw, "Slow Resolutions", "Tracing of slow resolve and map calls is not enabled.");
+            return;
+        }
+        titleHtml(pw, "Slow Resolutions", "Lists the slowest resolve and map calls taking at least "
+                + tracer.getThreshold() + " ms with the time spent in each stage.");
+
+        pw.print("<tr class='content'>");
+        pw.print("<td class='content' colspan='3'><a href='");
+        pw.print(ResponseUtil.escapeXml(request.getContextPath() + request.getServletPath() + request.getPathInfo() + SLOW_RESOLUTIONS_JSON));
+        pw.println("'>Export as JSON</a></td></tr>");
+
+        pw.println("<tr class='content'>");
+        pw.println("<th class='content'>Call</th>");
+        pw.println("<th class='content'>Duration</th>");
+        pw.println("<th class='content'>Stages</th>");
+        pw.println("</tr>");
+
+        for(final ResolutionTrace trace : tracer.getSlowestTraces()) {
+            pw.print("<tr class='content'>");
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(ResponseUtil.escapeXml(trace.getOperation() + " " + trace.getPath()));
+            pw.print("<br/>");
+            pw.print(ResponseUtil.escapeXml(new Date(trace.getTimestamp()).toString()));
+            pw.print("</td>");
+
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(TimeUnit.NANOSECONDS.toMillis(trace.getDuration()));
+            pw.print(" ms</td>");
+
+            pw.print("<td class='content' style='vertical-align: top'>");
+            pw.print(ResponseUtil.escapeXml(formatStages(trace, ", ")));
+            pw.println("</td></tr>");
+        }
+    }
+
+    private void dumpSlowResolutionsText(final PrintWriter pw) {
+        final ResolutionTracer tracer = this.resolverFactory.getResolutionTracer();
+        if ( tracer == null ) {
+            return;
+        }
+        pw.println("Slow Resolutions");
+
+        final String format = "%35s %15s %25s\r\n";
+        pw.printf(format, "Call", "Duration", "Stages");
+        for(final ResolutionTrace trace : tracer.getSlowestTraces()) {
+            pw.printf(format, trace.getOperation() + " " + trace.getPath(),
+                    TimeUnit.NANOSECONDS.toMillis(trace.getDuration()) + " ms", formatStages(trace, ", "));
+        }
+        pw.println();
+    }
+
+    /**
+     * Write the slowest traces as JSON, durations are in nanoseconds.
+     */
+    private void dumpSlowResolutionsJson(final PrintWriter pw) {
+        final ResolutionTracer tracer = this.resolverFactory.getResolutionTracer();
+        pw.print("{\"enabled\":");
+        pw.print(tracer != null);
+        pw.print(",\"traces\":[");
+        if ( tracer != null ) {
+            boolean first = true;
+            for(final ResolutionTrace trace : tracer.getSlowestTraces()) {
+                if ( !first ) {
+                    pw.print(',');
+                }
+                first = false;
+                pw.print("{\"operation\":");
+                pw.print(jsonString(trace.getOperation()));
+                pw.print(",\"path\":");
+                pw.print(jsonString(trace.getPath()));
+                pw.print(",\"timestamp\":");
+                pw.print(trace.getTimestamp());
+                pw.print(",\"duration\":");
+                pw.print(trace.getDuration());
+                pw.print(",\"stages\":{");
+                for(final ResolutionTrace.Stage stage : ResolutionTrace.Stage.values()) {
+                    if ( stage.ordinal() > 0 ) {
+                        pw.print(',');
+                    }
+                    pw.print(jsonString(stage.getName()));
+                    pw.print(':');
+                    pw.print(trace.getStageTime(stage));
+                }
+                pw.print("}}");
+            }
+        }
+        pw.println("]}");
+    }
+
+    private static String jsonString(final String value) {
+        if ( value == null ) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ( c == '"' || c == '\\' ) {
+                sb.append('\\').append(c);
+            } else if ( c < 0x20 ) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
     private void separatorText(PrintWriter pw) {
         pw.println();
     }
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.api.resource.path.PathBuilder;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.stateful.AuthenticatedResourceProvider;
+import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+
+/**
+ * This iterator lazily merges the children of a resource. Three sources
+ * are combined, in this order:
+ * <ol>
+ *   <li>resources of the providers which are directly mounted at a child path,</li>
+ *   <li>the children returned by the provider owning the parent,</li>
+ *   <li>synthetic resources for providers mounted at a lower level.</li>
+ * </ol>
+ * Mounted providers are only asked for their resource while iterating. As
+ * only children at a mount point can collide, duplicate detection is limited
+ * to the names of the mount points.
+ */
+public class MergedChildrenIterator extends AbstractIterator<Resource> {
+
+    private final ResourceResolverControl control;
+
+    private final ResourceResolverContext context;
+
+    private final Resource parent;
+
+    private final Map<String, Node<ResourceProviderHandler>> mounts;
+
+    private final Iterator<Resource> realChildren;
+
+    /** Mount point names which are already handled and must not be returned again. */
+    private final Set<String> handledNames;
+
+    private Iterator<Entry<String, Node<ResourceProviderHandler>>> providerIterator;
+
+    private Iterator<Entry<String, Node<ResourceProviderHandler>>> syntheticIterator;
+
+    public MergedChildrenIterator(final ResourceResolverControl control,
+            final ResourceResolverContext context,
+            final Node<ResourceProviderHandler> node,
+            final Resource parent,
+            final Iterator<Resource> realChildren) {
+        this.control = control;
+        this.context = context;
+        this.parent = parent;
+        this.mounts = node == null ? Collections.<String, Node<ResourceProviderHandler>>emptyMap() : node.getChildren();
+        this.realChildren = realChildren;
+        this.handledNames = this.mounts.isEmpty() ? Collections.<String>emptySet() : new HashSet<String>();
+        this.providerIterator = this.mounts.isEmpty() ? null : this.mounts.entrySet().iterator();
+    }
+
+    @Override
+    protected Resource seek() {
+        // resources of mounted providers
+        while (providerIterator != null && providerIterator.hasNext()) {
+            final Entry<String, Node<ResourceProviderHandler>> entry = providerIterator.next();
+            final ResourceProviderHandler handler = entry.getValue().getValue();
+            if (handler == null) {
+                continue;
+            }
+            final String name = entry.getKey();
+            Resource rsrc = null;
+            try {
+                final AuthenticatedResourceProvider rp = context.getProviderManager().getOrCreateProvider(handler, control);
+                rsrc = rp == null ? null : rp.getResource(getChildPath(name), parent, null);
+            } catch ( final LoginException ignore) {
+                // ignore
+            }
+            if ( rsrc != null ) {
+                handledNames.add(name);
+                return markResolved(rsrc);
+            }
+            // if there is a child provider underneath, a synthetic resource is created later on
+            // otherwise we need to make sure that no one else is providing this child
+            if ( entry.getValue().getChildren().isEmpty() ) {
+                handledNames.add(name);
+            }
+        }
+        providerIterator = null;
+
+        // children of the parent provider
+        while (realChildren != null && realChildren.hasNext()) {
+            final Resource rsrc = realChildren.next();
+            if ( !mounts.isEmpty() ) {
+                final String name = rsrc.getName();
+                if ( mounts.containsKey(name) && !handledNames.add(name) ) {
+                    continue;
+                }
+            }
+            return markResolved(rsrc);
+        }
+
+        // synthetic resources for providers mounted further down
+        if (syntheticIterator == null) {
+            syntheticIterator = mounts.entrySet().iterator();
+        }
+        while (syntheticIterator.hasNext()) {
+            final String name = syntheticIterator.next().getKey();
+            if ( handledNames.add(name) ) {
+                return markResolved(new SyntheticResource(context.getResourceResolver(), getChildPath(name), ResourceProvider.RESOURCE_TYPE_SYNTHETIC));
+            }
+        }
+        return null;
+    }
+
+    private String getChildPath(final String name) {
+        return new PathBuilder(parent.getPath()).append(name).toString();
+    }
+
+    private static Resource markResolved(final Resource rsrc) {
+        rsrc.getResourceMetadata().setResolutionPath(rsrc.getPath());
+        return rsrc;
+    }
+}
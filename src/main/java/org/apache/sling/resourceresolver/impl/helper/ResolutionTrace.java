@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The trace of a single resolve or map call, recording the time spent in
+ * the stages of the call.
+ *
+ * Like a resource resolver itself, this class is not thread safe.
+ */
+public class ResolutionTrace {
+
+    /**
+     * The traced stages. The stages might be nested, e.g. the vanity path
+     * lookups happen while iterating the map entries, therefore the sum of
+     * the stage times can be higher than the duration of the call.
+     */
+    public enum Stage {
+
+        /** Matching the /etc/map entries against the request or resource path. */
+        MAP_ENTRIES("mapEntries"),
+
+        /** Looking up vanity paths, part of {@link #MAP_ENTRIES} when resolving. */
+        VANITY_PATHS("vanityPaths"),
+
+        /** Direct access of the path candidates with selectors and extensions cut off. */
+        PATH_CANDIDATES("pathCandidates"),
+
+        /** Drilling down the resource tree and looking up aliases. */
+        ALIASES("aliases"),
+
+        /** Applying the resource decorators. */
+        DECORATION("decoration");
+
+        private final String name;
+
+        Stage(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * The name of the stage as used in reports
+         * @return The name
+         */
+        public @NotNull String getName() {
+            return this.name;
+        }
+    }
+
+    private final String operation;
+
+    private final String path;
+
+    private final long timestamp;
+
+    private final long start;
+
+    private final long[] stageTimes = new long[Stage.values().length];
+
+    private long duration = -1;
+
+    /**
+     * Start a new trace
+     * @param operation The traced operation, e.g. resolve or map
+     * @param path The path passed to the operation
+     */
+    public ResolutionTrace(@NotNull final String operation, final String path) {
+        this.operation = operation;
+        this.path = path;
+        this.timestamp = System.currentTimeMillis();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Add the time spent in a stage
+     * @param stage The stage
+     * @param stageStart The start of the stage as returned by {@link System#nanoTime()}
+     */
+    public void addStageTime(@NotNull final Stage stage, final long stageStart) {
+        this.stageTimes[stage.ordinal()] += System.nanoTime() - stageStart;
+    }
+
+    /**
+     * End the trace
+     * @return The duration of the traced call in nanoseconds
+     */
+    long end() {
+        if ( this.duration == -1 ) {
+            this.duration = System.nanoTime() - this.start;
+        }
+        return this.duration;
+    }
+
+    /**
+     * @return The traced operation
+     */
+    public @NotNull String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * @return The path passed to the operation
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return The time the call started in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return The duration of the call in nanoseconds or {@code -1} if the call has not ended yet
+     */
+    public long getDuration() {
+        return this.duration;
+    }
+
+    /**
+     * Get the time spent in a stage
+     * @param stage The stage
+     * @return The time in nanoseconds
+     */
+    public long getStageTime(@NotNull final Stage stage) {
+        return this.stageTimes[stage.ordinal()];
+    }
+}
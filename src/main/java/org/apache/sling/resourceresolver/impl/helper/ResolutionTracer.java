@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps the traces of the slowest resolve and map calls.
+ *
+ * Only calls taking at least the threshold are kept and of those only the
+ * configured number of slowest ones. Faster calls are discarded without
+ * locking.
+ */
+public class ResolutionTracer {
+
+    private static final Comparator<ResolutionTrace> BY_DURATION = Comparator.comparingLong(ResolutionTrace::getDuration);
+
+    private final long threshold;
+
+    private final int maxTraces;
+
+    /** The slowest traces, the fastest of them first. */
+    private final PriorityQueue<ResolutionTrace> traces;
+
+    /** Duration of the fastest kept trace once the maximum number of traces is kept. */
+    private volatile long minDuration;
+
+    /**
+     * Create a new tracer
+     * @param thresholdMillis The minimum duration of a call to be kept in milliseconds
+     * @param maxTraces The maximum number of traces to keep
+     */
+    public ResolutionTracer(final long thresholdMillis, final int maxTraces) {
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxTraces = Math.max(1, maxTraces);
+        this.traces = new PriorityQueue<>(this.maxTraces, BY_DURATION);
+        this.minDuration = this.threshold;
+    }
+
+    /**
+     * Start tracing a call
+     * @param operation The operation
+     * @param path The path passed to the operation
+     * @return The trace
+     */
+    public @NotNull ResolutionTrace start(@NotNull final String operation, final String path) {
+        return new ResolutionTrace(operation, path);
+    }
+
+    /**
+     * End tracing a call and keep the trace if it is one of the slowest
+     * @param trace The trace
+     */
+    public void finish(@NotNull final ResolutionTrace trace) {
+        final long duration = trace.end();
+        if ( duration < this.minDuration ) {
+            return;
+        }
+        synchronized ( this.traces ) {
+            this.traces.add(trace);
+            if ( this.traces.size() > this.maxTraces ) {
+                this.traces.poll();
+            }
+            if ( this.traces.size() == this.maxTraces ) {
+                this.minDuration = Math.max(this.threshold, this.traces.peek().getDuration());
+            }
+        }
+    }
+
+    /**
+     * Get the kept traces
+     * @return The traces, the slowest first
+     */
+    public @NotNull List<ResolutionTrace> getSlowestTraces() {
+        final List<ResolutionTrace> result;
+        synchronized ( this.traces ) {
+            result = new ArrayList<>(this.traces);
+        }
+        result.sort(BY_DURATION.reversed());
+        return result;
+    }
+
+    /**
+     * Discard all kept traces
+     */
+    public void clear() {
+        synchronized ( this.traces ) {
+            this.traces.clear();
+            this.minDuration = this.threshold;
+        }
+    }
+
+    /**
+     * @return The minimum duration of a kept call in milliseconds
+     */
+    public long getThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(this.threshold);
+    }
+}
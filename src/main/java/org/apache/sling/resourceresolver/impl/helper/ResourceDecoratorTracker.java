@@ -19,23 +19,51 @@
 package org.apache.sling.resourceresolver.impl.helper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceDecorator;
+import org.apache.sling.api.resource.path.PathSet;
 import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.commons.osgi.ServiceUtil;
 
 /**
  * Helper class to track the resource decorators and keep them sorted by their
  * service ranking.
+ *
+ * A decorator can restrict the resources it applies to with the service
+ * properties {@link #PROPERTY_PATHS} and {@link #PROPERTY_RESOURCE_TYPES}.
+ * Decorators are called in the order of their service ranking, and both
+ * properties are checked against the resource as returned by the previous
+ * decorator. A decorator changing the path or the resource type of a resource
+ * therefore changes the decorators called after it.
  */
 public class ResourceDecoratorTracker {
 
-    private static final ResourceDecorator[] EMPTY_ARRAY = new ResourceDecorator[0];
+    /**
+     * Optional service property of a resource decorator with the paths of the
+     * resources the decorator applies to. A path includes its sub tree.
+     */
+    public static final String PROPERTY_PATHS = "sling.decorator.paths";
+
+    /**
+     * Optional service property of a resource decorator with the resource types
+     * of the resources the decorator applies to. A resource type is only
+     * compared with {@link Resource#getResourceType()}; resource super types
+     * are not considered, so a decorator for a type and all its sub types
+     * has to list every sub type.
+     */
+    public static final String PROPERTY_RESOURCE_TYPES = "sling.decorator.resourceTypes";
+
+    private static final ResourceDecoratorEntry[] EMPTY = new ResourceDecoratorEntry[0];
 
     /**
      * The (optional) resource decorators, working copy.
@@ -43,14 +71,19 @@ public class ResourceDecoratorTracker {
     protected final List<ResourceDecoratorEntry> resourceDecorators = new ArrayList<ResourceDecoratorEntry>();
 
     /**
-     * An array of the above, updates when changes are created.
+     * A snapshot of the above, updates when changes are created.
      */
-    private volatile ResourceDecorator[] resourceDecoratorsArray = EMPTY_ARRAY;
+    private volatile ResourceDecoratorEntry[] decorators = EMPTY;
+
+    /**
+     * The number of decorators not called as they don't apply to the resource.
+     */
+    private final LongAdder skipped = new LongAdder();
 
     public void close() {
         synchronized (this.resourceDecorators) {
             this.resourceDecorators.clear();
-            this.resourceDecoratorsArray = EMPTY_ARRAY;
+            this.decorators = EMPTY;
         }
     }
 
@@ -61,14 +94,21 @@ public class ResourceDecoratorTracker {
      */
     public Resource decorate(final Resource resource) {
         Resource result = resource;
-        final ResourceDecorator[] decorators = this.resourceDecoratorsArray;
-        for (final ResourceDecorator decorator : decorators) {
+        int skippedCount = 0;
+        for (final ResourceDecoratorEntry entry : this.decorators) {
+            if (!entry.appliesTo(result)) {
+                skippedCount++;
+                continue;
+            }
             final Resource original = result;
-            result = decorator.decorate(original);
+            result = entry.decorator.decorate(original);
             if (result == null) {
                 result = original;
             }
         }
+        if (skippedCount > 0) {
+            this.skipped.add(skippedCount);
+        }
 
         // make resource metadata read-only
         result.getResourceMetadata().lock();
@@ -76,6 +116,15 @@ public class ResourceDecoratorTracker {
         return result;
     }
 
+    /**
+     * Get the number of decorators not called for a resource, as they don't
+     * apply to its path or resource type.
+     * @return The number of skipped decorators
+     */
+    public long getSkippedDecorators() {
+        return this.skipped.sum();
+    }
+
     /**
      * Bind a resource decorator.
      * @param decorator The decorator
@@ -85,7 +134,7 @@ public class ResourceDecoratorTracker {
             final Map<String, Object> props) {
         synchronized (this.resourceDecorators) {
             this.resourceDecorators.add(new ResourceDecoratorEntry(decorator,
-                    ServiceUtil.getComparableForServiceRanking(props, Order.ASCENDING)));
+                    ServiceUtil.getComparableForServiceRanking(props, Order.ASCENDING), props));
             Collections.sort(this.resourceDecorators);
             updateResourceDecoratorsArray();
         }
@@ -117,20 +166,11 @@ public class ResourceDecoratorTracker {
      * should only be called from a synchronized block.
      */
     private void updateResourceDecoratorsArray() {
-        final ResourceDecorator[] decorators;
         if (this.resourceDecorators.size() > 0) {
-            decorators = new ResourceDecorator[this.resourceDecorators.size()];
-            int index = 0;
-            final Iterator<ResourceDecoratorEntry> i = this.resourceDecorators
-                    .iterator();
-            while (i.hasNext()) {
-                decorators[index] = i.next().decorator;
-                index++;
-            }
+            this.decorators = this.resourceDecorators.toArray(new ResourceDecoratorEntry[this.resourceDecorators.size()]);
         } else {
-            decorators = EMPTY_ARRAY;
+            this.decorators = EMPTY;
         }
-        this.resourceDecoratorsArray = decorators;
     }
 
     /**
@@ -143,10 +183,37 @@ public class ResourceDecoratorTracker {
 
         final ResourceDecorator decorator;
 
+        /** The paths the decorator applies to, {@code null} for all paths */
+        final PathSet paths;
+
+        /** The resource types the decorator applies to, {@code null} for all types */
+        final Set<String> resourceTypes;
+
         public ResourceDecoratorEntry(final ResourceDecorator d,
-                final Comparable<Object> comparable) {
+                final Comparable<Object> comparable,
+                final Map<String, Object> props) {
             this.comparable = comparable;
             this.decorator = d;
+            final String[] paths = props == null ? null : PropertiesUtil.toStringArray(props.get(PROPERTY_PATHS));
+            this.paths = paths == null || paths.length == 0 ? null : PathSet.fromStrings(paths);
+            final String[] types = props == null ? null : PropertiesUtil.toStringArray(props.get(PROPERTY_RESOURCE_TYPES));
+            this.resourceTypes = types == null || types.length == 0 ? null : new HashSet<>(Arrays.asList(types));
+        }
+
+        /**
+         * Check whether the decorator applies to the path and the resource type of a resource
+         * @param resource The resource
+         * @return {@code true} if the decorator applies
+         */
+        boolean appliesTo(final Resource resource) {
+            if (this.paths != null && this.paths.matches(resource.getPath()) == null) {
+                return false;
+            }
+            if (this.resourceTypes != null) {
+                final String resourceType = resource.getResourceType();
+                return resourceType != null && this.resourceTypes.contains(resourceType);
+            }
+            return true;
         }
 
         public int compareTo(final ResourceDecoratorEntry o) {
@@ -38,6 +38,15 @@ public class ResourcePathIterator implements Iterator<String> {
     // the next path to return, null if nothing more to return
     private String nextPath;
 
+    // positions of the dots in the path, null to search for the dots
+    private int[] dots;
+
+    // number of dots not used yet
+    private int dotCount;
+
+    // offset of the positions of the dots in the path
+    private int dotOffset;
+
     /**
      * Creates a new instance iterating over the given path
      *
@@ -74,6 +83,23 @@ public class ResourcePathIterator implements Iterator<String> {
         }
     }
 
+    /**
+     * Creates a new instance iterating over the given path using the known
+     * positions of the dots in the path.
+     *
+     * @param path The path to iterate over. If this is empty or
+     *            <code>null</code> this iterator will not return anything.
+     * @param dots The positions of all dots after the offset, relative to the
+     *            offset and in ascending order.
+     * @param dotOffset The offset of the positions in the path.
+     */
+    public ResourcePathIterator(String path, int[] dots, int dotOffset) {
+        this(path);
+        this.dots = dots;
+        this.dotCount = dots.length;
+        this.dotOffset = dotOffset;
+    }
+
     public boolean hasNext() {
         return nextPath != null;
     }
@@ -86,7 +112,21 @@ public class ResourcePathIterator implements Iterator<String> {
         final String result = nextPath;
 
         // find next path
-        int lastDot = nextPath.lastIndexOf('.');
+        int lastDot = -1;
+        if (dots != null) {
+            while (dotCount > 0 && lastDot == -1) {
+                final int dot = dots[--dotCount] + dotOffset;
+                if (dot < nextPath.length()) {
+                    lastDot = dot;
+                }
+            }
+            if (lastDot == -1 && dotOffset > 0) {
+                // the start of the path might contain dots
+                lastDot = nextPath.lastIndexOf('.', dotOffset - 1);
+            }
+        } else {
+            lastDot = nextPath.lastIndexOf('.');
+        }
         nextPath = (lastDot > 0) ? nextPath.substring(0, lastDot) : null;
 
         return result;
@@ -17,10 +17,14 @@
  */
 package org.apache.sling.resourceresolver.impl.helper;
 
+import java.util.Optional;
+
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.resourceresolver.impl.providers.stateful.ProviderManager;
 
 /**
@@ -34,9 +38,18 @@ public class ResourceResolverContext {
 
     private final ProviderManager providerManager;
 
+    private final Optional<ResourceResolverMetrics> metrics;
+
     public ResourceResolverContext(@NotNull final ResourceResolver resolver, @NotNull final ResourceAccessSecurityTracker tracker) {
+        this(resolver, tracker, Optional.empty());
+    }
+
+    public ResourceResolverContext(@NotNull final ResourceResolver resolver,
+            @NotNull final ResourceAccessSecurityTracker tracker,
+            @NotNull final Optional<ResourceResolverMetrics> metrics) {
         this.resolver = resolver;
-        this.providerManager = new ProviderManager(resolver, tracker);
+        this.metrics = metrics;
+        this.providerManager = new ProviderManager(resolver, tracker, metrics);
     }
 
     public ResourceResolver getResourceResolver() {
@@ -46,4 +59,37 @@ public class ResourceResolverContext {
     public ProviderManager getProviderManager() {
         return this.providerManager;
     }
+
+    /**
+     * Get the metrics to report the time taken by operations to.
+     * @return The metrics or {@code null} if metrics are not available or
+     *         operation timers are disabled
+     */
+    public @Nullable ResourceResolverMetrics getOperationMetrics() {
+        if ( this.metrics.isPresent() && this.metrics.get().isOperationTimersEnabled() ) {
+            return this.metrics.get();
+        }
+        return null;
+    }
+
+    /**
+     * Start timing an operation.
+     * @return The start time or {@code 0} if operation timers are disabled
+     * @see #endOperation(String, String, long)
+     */
+    public long startOperation() {
+        return this.getOperationMetrics() != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Report an operation timed with {@link #startOperation()}.
+     * @param operation The operation
+     * @param provider The name of the provider handling the operation
+     * @param start The start time returned by {@link #startOperation()}
+     */
+    public void endOperation(@NotNull final String operation, @NotNull final String provider, final long start) {
+        if ( start != 0 ) {
+            this.metrics.get().reportOperation(operation, provider, System.nanoTime() - start);
+        }
+    }
 }
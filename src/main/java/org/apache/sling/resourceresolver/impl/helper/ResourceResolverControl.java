@@ -23,17 +23,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.commons.collections4.iterators.IteratorChain;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
@@ -76,6 +73,17 @@ public class ResourceResolverControl {
             ResourceProvider.AUTH_SERVICE_BUNDLE,
             ResourceResolverFactory.SUBSERVICE};
 
+    /** Operation names for the operation timers. */
+    public static final String OPERATION_RESOLVE = "resolve";
+    public static final String OPERATION_MAP = "map";
+    public static final String OPERATION_GET_RESOURCE = "getResource";
+    public static final String OPERATION_LIST_CHILDREN = "listChildren";
+    public static final String OPERATION_FIND_RESOURCES = "findResources";
+    public static final String OPERATION_COMMIT = "commit";
+
+    /** Provider name reported if no provider handles a path. */
+    private static final String NO_PROVIDER = "none";
+
     /** Is this a resource resolver for an admin? */
     private final boolean isAdmin;
 
@@ -242,7 +250,9 @@ public class ResourceResolverControl {
 
         final AuthenticatedResourceProvider provider = this.getBestMatchingProvider(context, path);
         if ( provider != null ) {
+            final long start = context.startOperation();
             final Resource resourceCandidate = provider.getResource(path, parent, parameters);
+            context.endOperation(OPERATION_GET_RESOURCE, provider.getName(), start);
             if (resourceCandidate != null) {
                 return resourceCandidate;
             }
@@ -294,11 +304,59 @@ public class ResourceResolverControl {
         Iterator<Resource> realChildren = null;
         final AuthenticatedResourceProvider provider = this.getBestMatchingProvider(context, parentPath);
         if ( provider != null ) {
+            final long start = context.startOperation();
             realChildren = provider.listChildren(parent);
+            context.endOperation(OPERATION_LIST_CHILDREN, provider.getName(), start);
         }
         return listChildrenInternal(context, getResourceProviderStorage().getTree().getNode(parentPath), parent, realChildren);
     }
 
+    /**
+     * Checks whether the parent has at least one child. Unlike
+     * {@link #listChildren(ResourceResolverContext, Resource)} this does not
+     * build the merged children iterator but returns as soon as one readable
+     * child is found. Mount points below the parent are checked first, as
+     * they do not require a call to the provider owning the parent.
+     * @param context The context
+     * @param parent The parent resource
+     * @return {@code true} if the parent has at least one child
+     */
+    public boolean hasChildren(final ResourceResolverContext context, final Resource parent) {
+        final String parentPath = parent.getPath();
+        final Node<ResourceProviderHandler> node = getResourceProviderStorage().getTree().getNode(parentPath);
+        if ( node != null ) {
+            for (final Map.Entry<String, Node<ResourceProviderHandler>> entry : node.getChildren().entrySet()) {
+                final ResourceProviderHandler handler = entry.getValue().getValue();
+                // intermediate nodes always result in at least a synthetic resource
+                if ( handler == null || !entry.getValue().getChildren().isEmpty() ) {
+                    return true;
+                }
+                try {
+                    final AuthenticatedResourceProvider rp = context.getProviderManager().getOrCreateProvider(handler, this);
+                    if ( rp != null && rp.getResource(new PathBuilder(parentPath).append(entry.getKey()).toString(), parent, null) != null ) {
+                        return true;
+                    }
+                } catch ( final LoginException ignore) {
+                    // ignore
+                }
+            }
+        }
+
+        final AuthenticatedResourceProvider provider = this.getBestMatchingProvider(context, parentPath);
+        if ( provider != null ) {
+            final Iterator<Resource> realChildren = provider.listChildren(parent);
+            if ( realChildren != null ) {
+                while ( realChildren.hasNext() ) {
+                    // all mount points below the parent are known to shadow the real children at this point
+                    if ( node == null || !node.getChildren().containsKey(realChildren.next().getName()) ) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Internal method
      * @param context The context
@@ -307,66 +365,14 @@ public class ResourceResolverControl {
      * @param realChildren The children
      * @return The children
      */
-    @SuppressWarnings("unchecked")
     public Iterator<Resource> listChildrenInternal(final ResourceResolverContext context, 
         final Node<ResourceProviderHandler> node,
         final Resource parent,
         final Iterator<Resource> realChildren) {
-        
-        final Set<String> visitedNames = new HashSet<>();
-
-        IteratorChain<Resource> chain = new IteratorChain<>();
-
-        // synthetic and providers are done in one loop
-        if (node != null) {
-            final List<Resource> syntheticList = new ArrayList<>();
-            final List<Resource> providerList = new ArrayList<>();
-
-            for (final Entry<String, Node<ResourceProviderHandler>> entry : node.getChildren().entrySet()) {
-                final String name = entry.getKey();
-                final ResourceProviderHandler handler = entry.getValue().getValue();
-                PathBuilder pathBuilder = new PathBuilder(parent.getPath());
-                pathBuilder.append(name);
-                final String childPath = pathBuilder.toString();
-                if (handler == null) {
-                    syntheticList.add(new SyntheticResource(context.getResourceResolver(), childPath, ResourceProvider.RESOURCE_TYPE_SYNTHETIC));
-                } else {
-                    Resource rsrc = null;
-                    try {
-                        final AuthenticatedResourceProvider rp = context.getProviderManager().getOrCreateProvider(handler, this);
-                        rsrc = rp == null ? null : rp.getResource(childPath, parent, null);
-                    } catch ( final LoginException ignore) {
-                        // ignore
-                    }
-                    if ( rsrc != null ) {
-                        providerList.add(rsrc);
-                    } else {
-                        // if there is a child provider underneath, we need to create a synthetic resource
-                        // otherwise we need to make sure that no one else is providing this child
-                        if ( !entry.getValue().getChildren().isEmpty() ) {
-                            syntheticList.add(new SyntheticResource(context.getResourceResolver(), childPath, ResourceProvider.RESOURCE_TYPE_SYNTHETIC));
-                        } else {
-                            visitedNames.add(name);
-                        }
-                    }
-                }
-            }
-            if ( !providerList.isEmpty() ) {
-                chain.addIterator(providerList.iterator());
-            }
-            if ( realChildren != null ) {
-                chain.addIterator(realChildren);
-            }
-            if ( !syntheticList.isEmpty() ) {
-                chain.addIterator(syntheticList.iterator());
-            }
-        } else if ( realChildren != null ) {
-            chain.addIterator(realChildren);
-        }
-        if ( chain.size() == 0 ) {
-            return Collections.EMPTY_LIST.iterator();
+        if ( realChildren == null && (node == null || node.getChildren().isEmpty()) ) {
+            return Collections.emptyIterator();
         }
-        return new UniqueResourceIterator(visitedNames, chain);
+        return new MergedChildrenIterator(this, context, node, parent, realChildren);
     }
 
     /**
@@ -528,7 +534,9 @@ public class ResourceResolverControl {
      */
     public void commit(final ResourceResolverContext context) throws PersistenceException {
         for (final AuthenticatedResourceProvider p : context.getProviderManager().getAllUsedModifiable()) {
+            final long start = context.startOperation();
             p.commit();
+            context.endOperation(OPERATION_COMMIT, p.getName(), start);
         }
     }
 
@@ -571,7 +579,9 @@ public class ResourceResolverControl {
         final List<AuthenticatedResourceProvider> queryableRP = getQueryableProviders(context, language);
         final List<Iterator<Resource>> iterators = new ArrayList<>(queryableRP.size());
         for (AuthenticatedResourceProvider p : queryableRP) {
+            final long start = context.startOperation();
             iterators.add(p.findResources(query, language));
+            context.endOperation(OPERATION_FIND_RESOURCES, p.getName(), start);
         }
         return new ChainedIterator<>(iterators.iterator());
     }
@@ -794,6 +804,22 @@ public class ResourceResolverControl {
         }
     }
 
+    /**
+     * Get the name of the provider handling the path, used for reporting.
+     * @param path The path
+     * @return The name of the best matching provider, its path if it has no name
+     *         or {@code none} if no provider handles the path
+     */
+    public @NotNull String getProviderName(final @Nullable String path) {
+        final Node<ResourceProviderHandler> node = path == null || !path.startsWith("/") ? null
+                : resourceProviderTracker.getResourceProviderStorage().getTree().getBestMatchingNode(path);
+        if ( node == null || node.getValue() == null ) {
+            return NO_PROVIDER;
+        }
+        final String name = node.getValue().getInfo().getName();
+        return name != null ? name : node.getValue().getInfo().getPath();
+    }
+
     /**
      * Get best modifiable matching provider
      * @param context The context
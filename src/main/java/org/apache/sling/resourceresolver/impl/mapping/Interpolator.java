@@ -19,8 +19,10 @@ package org.apache.sling.resourceresolver.impl.mapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -49,6 +51,176 @@ public class Interpolator {
         Object provide(String type, String name, Map<String, String> directives);
     }
 
+    /**
+     * Compile a value into a template which can be evaluated repeatedly without
+     * parsing the value again. Evaluating the template returns the same result
+     * as {@link #replace(String, Provider)}.
+     *
+     * @param value Value with place holders
+     * @return The template
+     */
+    public static Template compile(final String value) {
+        final List<String> literals = new ArrayList<>();
+        final List<Placeholder> placeholders = new ArrayList<>();
+        String result = value;
+        int literalStart = 0;
+        int start = -1;
+        while (start < result.length()) {
+            start = result.indexOf(START, start);
+            if (start == -1) {
+                start = result.length();
+                continue;
+            }
+
+            if (start > 0 && result.charAt(start - 1) == ESCAPE
+                    && (start == 1 || result.charAt(start - 2) != ESCAPE)) {
+                // placeholder is escaped -> remove escape and continue
+                result = result.substring(0, start - 1).concat(result.substring(start));
+                start = start + START.length();
+                continue;
+            }
+
+            int count = 1;
+            int index = start + START.length();
+            while (index < result.length() && count > 0) {
+                if (result.charAt(index) == START.charAt(1) && result.charAt(index - 1) == START.charAt(0)) {
+                    count++;
+                } else if (result.charAt(index) == END) {
+                    count--;
+                }
+                index++;
+            }
+
+            if (count > 0) {
+                // no matching end found -> end
+                start = result.length();
+                continue;
+            }
+
+            final String key = result.substring(start + START.length(), index - 1);
+            final int sep = key.indexOf(NAME_SEPARATOR);
+            if (sep == -1) {
+                // invalid key
+                start = index;
+                continue;
+            }
+            if (key.contains(START)) {
+                // nested place holders are replaced recursively
+                return new Template(value, null, null);
+            }
+
+            final String postfix = key.substring(sep + 1);
+            final int dirPos = postfix.indexOf(DIRECTIVES_SEPARATOR);
+            final Map<String, String> directives;
+            final String name;
+            if (dirPos == -1) {
+                name = postfix;
+                directives = Collections.emptyMap();
+            } else {
+                name = postfix.substring(0, dirPos);
+                final Map<String, String> parsed = new HashMap<>();
+                for (String dir : postfix.substring(dirPos + 1).split(DIRECTIVES_SEPARATOR + "")) {
+                    String[] kv = dir.split(DIRECTIVES_VALUE_SEPARATOR + "");
+                    if (kv.length == 2) {
+                        parsed.put(kv[0], kv[1]);
+                    }
+                }
+                directives = Collections.unmodifiableMap(parsed);
+            }
+            literals.add(result.substring(literalStart, start));
+            placeholders.add(new Placeholder(key.substring(0, sep), name, directives, result.substring(start, index)));
+            literalStart = index;
+            start = index;
+        }
+        literals.add(result.substring(literalStart));
+        return new Template(value,
+                literals.toArray(new String[literals.size()]),
+                placeholders.toArray(new Placeholder[placeholders.size()]));
+    }
+
+    /**
+     * A value split into literal text and place holders
+     */
+    public static final class Template {
+
+        private final String value;
+
+        /** The literals before, between and after the place holders */
+        private final String[] literals;
+
+        /** The place holders or {@code null} if the value has to be replaced with {@link Interpolator#replace(String, Provider)} */
+        private final Placeholder[] placeholders;
+
+        Template(final String value, final String[] literals, final Placeholder[] placeholders) {
+            this.value = value;
+            this.literals = literals;
+            this.placeholders = placeholders;
+        }
+
+        /**
+         * Replace all place holders
+         *
+         * @param provider Provider for providing the values
+         * @return Replaced object (or original value)
+         */
+        public Object replace(final Provider provider) {
+            if (placeholders == null) {
+                return Interpolator.replace(value, provider);
+            }
+            if (placeholders.length == 0) {
+                return literals[0];
+            }
+            final StringBuilder sb = new StringBuilder(value.length());
+            sb.append(literals[0]);
+            for (int i = 0; i < placeholders.length; i++) {
+                final Placeholder placeholder = placeholders[i];
+                final Object replacement = provider.provide(placeholder.type, placeholder.name, placeholder.directives);
+                if (replacement == null) {
+                    sb.append(placeholder.text);
+                } else if (replacement instanceof String && !needsRescan((String) replacement)) {
+                    sb.append((String) replacement);
+                } else {
+                    // the replacement changes how the rest of the value is parsed
+                    return Interpolator.replace(value, provider);
+                }
+                sb.append(literals[i + 1]);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Replacements are parsed again, together with the text following them.
+         * A replacement can only be appended as is, if it can't start a place
+         * holder or escape the next one.
+         */
+        private static boolean needsRescan(final String replacement) {
+            if (replacement.isEmpty()) {
+                return true;
+            }
+            final char last = replacement.charAt(replacement.length() - 1);
+            return last == ESCAPE || last == START.charAt(0) || replacement.contains(START);
+        }
+    }
+
+    private static final class Placeholder {
+
+        final String type;
+
+        final String name;
+
+        final Map<String, String> directives;
+
+        /** The place holder as found in the value */
+        final String text;
+
+        Placeholder(final String type, final String name, final Map<String, String> directives, final String text) {
+            this.type = type;
+            this.name = name;
+            this.directives = directives;
+            this.text = text;
+        }
+    }
+
     /**
      * Replace all place holders
      *
@@ -57,6 +57,8 @@ public interface MapConfigurationProvider extends ResourceResolverFactory {
 
     boolean isOptimizeAliasResolutionEnabled();
 
+    boolean isAliasCacheInitInBackground();
+
     boolean hasVanityPathPrecedence();
 
     Map<String, Object> getServiceUserAuthenticationInfo(final String subServiceName) throws LoginException;
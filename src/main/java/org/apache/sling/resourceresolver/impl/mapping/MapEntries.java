@@ -33,6 +33,7 @@ import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
 import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider.VanityPathConfig;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -155,7 +156,15 @@ public class MapEntries implements
 
     private final StringInterpolationProvider stringInterpolationProvider;
 
-    private final boolean useOptimizeAliasResolution;
+    private volatile boolean useOptimizeAliasResolution;
+
+    /**
+     * The alias changes while the aliases are loaded in the background, guarded by
+     * {@link #initializing}. {@code null} if the aliases are not loaded in the background.
+     */
+    private volatile List<Map.Entry<String, ResourceChange.ChangeType>> aliasChangeQueue;
+
+    private final AtomicBoolean aliasesProcessed = new AtomicBoolean(false);
 
     public MapEntries(final MapConfigurationProvider factory, 
             final BundleContext bundleContext, 
@@ -178,6 +187,8 @@ public class MapEntries implements
 
         this.registration = registerResourceChangeListener(bundleContext);
 
+        initializeAliases();
+
         this.vanityCounter = new AtomicLong(0);
         this.vanityPathLookups = new AtomicLong(0);
         this.vanityPathBloomNegative = new AtomicLong(0);
@@ -191,6 +202,7 @@ public class MapEntries implements
             this.metrics.get().setNumberOfVanityPathBloomNegativeSupplier(vanityPathBloomNegative::get);
             this.metrics.get().setNumberOfVanityPathBloomFalsePositiveSupplier(vanityPathBloomFalsePositive::get);
             this.metrics.get().setNumberOfAliasesSupplier(() -> (long) aliasMap.size());
+            this.metrics.get().setAliasCacheReadySupplier(() -> isOptimizeAliasResolutionEnabled() ? 1L : 0L);
         }
     }
 
@@ -227,11 +239,12 @@ public class MapEntries implements
             boolean isOptimizeAliasResolutionEnabled = this.factory.isOptimizeAliasResolutionEnabled();
 
             //optimization made in SLING-2521
-            if (isOptimizeAliasResolutionEnabled) {
+            if (isOptimizeAliasResolutionEnabled && !this.factory.isAliasCacheInitInBackground()) {
                 try {
                     final Map<String, Map<String, String>> loadedMap = this.loadAliases(resolver);
                     this.aliasMap = loadedMap;
-    
+                    this.aliasesProcessed.set(true);
+
                 } catch (final Exception e) {
 
                     logDisableAliasOptimization(e);
@@ -256,6 +269,129 @@ public class MapEntries implements
         }
     }
 
+    /**
+     * Start loading the aliases in the background, if configured. Until the
+     * aliases are loaded, alias optimization is reported as disabled, so aliases
+     * are resolved without the alias map, and alias changes are queued.
+     */
+    protected void initializeAliases() {
+        this.initializing.lock();
+        try {
+            if (this.useOptimizeAliasResolution && this.factory.isAliasCacheInitInBackground() && !this.aliasesProcessed.get()) {
+                this.aliasChangeQueue = new ArrayList<>();
+                this.log.debug("bg alias init starting");
+                final Thread aliasInit = new Thread(new AliasInitializer(this.factory), "AliasInitializer");
+                aliasInit.setDaemon(true);
+                aliasInit.start();
+            }
+        } finally {
+            this.initializing.unlock();
+        }
+    }
+
+    private class AliasInitializer implements Runnable {
+
+        private final MapConfigurationProvider factory;
+
+        public AliasInitializer(MapConfigurationProvider factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public void run() {
+            try (ResourceResolver resolver = factory
+                    .getServiceResourceResolver(factory.getServiceUserAuthenticationInfo("mapping"))) {
+
+                long initStart = System.nanoTime();
+                log.debug("alias initialization - start");
+
+                final Map<String, Map<String, String>> loadedMap = loadAliases(resolver);
+
+                boolean changed = false;
+                initializing.lock();
+                try {
+                    if (MapEntries.this.resolver == null) {
+                        // disposed in the meantime
+                        return;
+                    }
+                    aliasMap = loadedMap;
+
+                    // apply the changes which happened while loading
+                    final List<Map.Entry<String, ResourceChange.ChangeType>> queue = aliasChangeQueue;
+                    aliasChangeQueue = null;
+                    final AtomicBoolean resolverRefreshed = new AtomicBoolean(false);
+                    for (final Map.Entry<String, ResourceChange.ChangeType> entry : queue) {
+                        changed |= handleAliasChange(entry.getValue(), entry.getKey(), resolverRefreshed);
+                    }
+                    aliasesProcessed.set(true);
+                } finally {
+                    initializing.unlock();
+                }
+                if (changed) {
+                    sendChangeEvent();
+                }
+
+                long initElapsed = System.nanoTime() - initStart;
+                log.info("alias initialization - end, elapsed {}ms", TimeUnit.NANOSECONDS.toMillis(initElapsed));
+            } catch (final Exception e) {
+                logDisableAliasOptimization(e);
+                initializing.lock();
+                try {
+                    useOptimizeAliasResolution = false;
+                    aliasChangeQueue = null;
+                } finally {
+                    initializing.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue an alias change while the aliases are loaded in the background
+     * @param type The change type
+     * @param path The changed path
+     * @return {@code true} if the change is queued, {@code false} if it has to be applied
+     */
+    private boolean queueAliasChange(final ResourceChange.ChangeType type, final String path) {
+        if (this.aliasChangeQueue == null) {
+            return false;
+        }
+        this.initializing.lock();
+        try {
+            final List<Map.Entry<String, ResourceChange.ChangeType>> queue = this.aliasChangeQueue;
+            if (queue == null) {
+                return false;
+            }
+            log.trace("enqueue alias change: {} {}", type, path);
+            queue.add(new SimpleEntry<>(path, type));
+            return true;
+        } finally {
+            this.initializing.unlock();
+        }
+    }
+
+    /**
+     * Apply a queued alias change to the alias map
+     * @param type The change type
+     * @param path The changed path
+     * @param resolverRefreshed Whether the resolver has been refreshed
+     * @return {@code true} if the alias map changed
+     */
+    private boolean handleAliasChange(final ResourceChange.ChangeType type, final String path, final AtomicBoolean resolverRefreshed) {
+        if (type == ResourceChange.ChangeType.REMOVED) {
+            return removeAliases(path, resolverRefreshed);
+        }
+        this.refreshResolverIfNecessary(resolverRefreshed);
+        final Resource resource = this.resolver != null ? resolver.getResource(path) : null;
+        if (resource == null) {
+            return false;
+        }
+        if (type == ResourceChange.ChangeType.ADDED) {
+            return resource.getValueMap().containsKey(ResourceResolverImpl.PROP_ALIAS) && doAddAlias(resource);
+        }
+        return doUpdateAlias(resource);
+    }
+
     /**
      * Actual vanity paths initializer. Guards itself against concurrent use by
      * using a ReentrantLock. Does nothing if the resource resolver has already
@@ -354,15 +490,36 @@ public class MapEntries implements
         }
     }
 
-    private boolean addResource(final String path, final AtomicBoolean resolverRefreshed) {
+    /**
+     * Acquire the lock for processing a resource change
+     * @return The time the lock was acquired
+     */
+    private long lockForChange() {
         this.initializing.lock();
+        return System.nanoTime();
+    }
+
+    /**
+     * Release the lock acquired by {@link #lockForChange()} and report the time it was held
+     * @param locked The time the lock was acquired
+     */
+    private void unlockForChange(final long locked) {
+        this.initializing.unlock();
+        if (this.metrics.isPresent()) {
+            this.metrics.get().reportMapEntriesLockHeld(System.nanoTime() - locked);
+        }
+    }
+
+    private boolean addResource(final String path, final AtomicBoolean resolverRefreshed) {
+        final long locked = this.lockForChange();
 
         try {
             this.refreshResolverIfNecessary(resolverRefreshed);
             final Resource resource = this.resolver != null ? resolver.getResource(path) : null;
             if (resource != null) {
                 boolean changed = doAddVanity(resource);
-                if (this.useOptimizeAliasResolution && resource.getValueMap().containsKey(ResourceResolverImpl.PROP_ALIAS)) {
+                if (this.useOptimizeAliasResolution && resource.getValueMap().containsKey(ResourceResolverImpl.PROP_ALIAS)
+                        && !queueAliasChange(ResourceChange.ChangeType.ADDED, path)) {
                     changed |= doAddAlias(resource);
                 }
                 return changed;
@@ -370,14 +527,14 @@ public class MapEntries implements
 
             return false;
         } finally {
-            this.initializing.unlock();
+            this.unlockForChange(locked);
         }
     }
 
     private boolean updateResource(final String path, final AtomicBoolean resolverRefreshed) {
         final boolean isValidVanityPath =  this.isValidVanityPath(path);
         if ( this.useOptimizeAliasResolution || isValidVanityPath) {
-            this.initializing.lock();
+            final long locked = this.lockForChange();
 
             try {
                 this.refreshResolverIfNecessary(resolverRefreshed);
@@ -396,14 +553,14 @@ public class MapEntries implements
                         }
                         changed |= doAddVanity(contentRsrc != null ? contentRsrc : resource);
                     }
-                    if (this.useOptimizeAliasResolution) {
+                    if (this.useOptimizeAliasResolution && !queueAliasChange(ResourceChange.ChangeType.CHANGED, path)) {
                         changed |= doUpdateAlias(resource);
                     }
 
                     return changed;
                 }
             } finally {
-                this.initializing.unlock();
+                this.unlockForChange(locked);
             }
         }
 
@@ -420,13 +577,25 @@ public class MapEntries implements
                 changed |= removeVanityPath(target);
             }
         }
-        if (this.useOptimizeAliasResolution) {
-            final String pathPrefix = path + "/";
-            for (final String contentPath : this.aliasMap.keySet()) {
-                if (path.startsWith(contentPath + "/") || path.equals(contentPath)
-                        || contentPath.startsWith(pathPrefix)) {
-                    changed |= removeAlias(contentPath, path, resolverRefreshed);
-                }
+        if (this.useOptimizeAliasResolution && !queueAliasChange(ResourceChange.ChangeType.REMOVED, path)) {
+            changed |= removeAliases(path, resolverRefreshed);
+        }
+        return changed;
+    }
+
+    /**
+     * Remove the aliases affected by the removal of a resource
+     * @param path The path of the removed resource
+     * @param resolverRefreshed Whether the resolver has been refreshed
+     * @return {@code true} if a change happened
+     */
+    private boolean removeAliases(final String path, final AtomicBoolean resolverRefreshed) {
+        boolean changed = false;
+        final String pathPrefix = path + "/";
+        for (final String contentPath : this.aliasMap.keySet()) {
+            if (path.startsWith(contentPath + "/") || path.equals(contentPath)
+                    || contentPath.startsWith(pathPrefix)) {
+                changed |= removeAlias(contentPath, path, resolverRefreshed);
             }
         }
         return changed;
@@ -468,7 +637,7 @@ public class MapEntries implements
             return false;
         }
 
-        this.initializing.lock();
+        final long locked = this.lockForChange();
         try {
             final Map<String, String> aliasMapEntry = aliasMap.get(contentPath);
             if (aliasMapEntry != null) {
@@ -500,16 +669,16 @@ public class MapEntries implements
             }
             return aliasMapEntry != null;
         } finally {
-            this.initializing.unlock();
+            this.unlockForChange(locked);
         }
     }
 
     private boolean removeVanityPath(final String path) {
-        this.initializing.lock();
+        final long locked = this.lockForChange();
         try {
             return doRemoveVanity(path);
         } finally {
-            this.initializing.unlock();
+            this.unlockForChange(locked);
         }
     }
 
@@ -682,6 +851,11 @@ public class MapEntries implements
 
     @Override
     public Iterator<MapEntry> getResolveMapsIterator(final String requestPath) {
+        return getResolveMapsIterator(requestPath, null);
+    }
+
+    @Override
+    public Iterator<MapEntry> getResolveMapsIterator(final String requestPath, final ResolutionTrace trace) {
         String key = null;
         final int firstIndex = requestPath.indexOf('/');
         final int secondIndex = requestPath.indexOf('/', firstIndex + 1);
@@ -689,7 +863,7 @@ public class MapEntries implements
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, this.factory.hasVanityPathPrecedence());
+        return new MapEntryIterator(key, resolveMapsMap, this.factory.hasVanityPathPrecedence(), trace);
     }
 
     @Override
@@ -698,7 +872,7 @@ public class MapEntries implements
     }
 
     public boolean isOptimizeAliasResolutionEnabled() {
-        return this.useOptimizeAliasResolution;
+        return this.useOptimizeAliasResolution && this.aliasesProcessed.get();
     }
     
     @Override
@@ -806,7 +980,7 @@ public class MapEntries implements
         if ( this.factory.isMapConfiguration(path)
              || (isDelete && this.factory.getMapRoot().startsWith(path + "/")) ) {
             if ( hasReloadedConfig.compareAndSet(false, true) ) {
-                this.initializing.lock();
+                final long locked = this.lockForChange();
 
                 try {
                     if (this.resolver != null) {
@@ -814,7 +988,7 @@ public class MapEntries implements
                         doUpdateConfiguration();
                     }
                 } finally {
-                    this.initializing.unlock();
+                    this.unlockForChange(locked);
                 }
                 return true;
             }
@@ -1659,6 +1833,10 @@ public class MapEntries implements
 
     @Override
     public void logDisableAliasOptimization() {
+        if (this.aliasChangeQueue != null) {
+            // aliases are still loaded in the background
+            return;
+        }
         this.logDisableAliasOptimization(null);
     }
 
@@ -1690,11 +1868,15 @@ public class MapEntries implements
 
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
+        private final ResolutionTrace trace;
+
+        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence,
+                final ResolutionTrace trace) {
             this.key = startKey;
             this.resolveMapsMap = resolveMapsMap;
             this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
             this.vanityPathPrecedence = vanityPathPrecedence;
+            this.trace = trace;
             this.seek();
         }
 
@@ -1747,7 +1929,11 @@ public class MapEntries implements
                     if (MapEntries.this.isAllVanityPathEntriesCached() && MapEntries.this.vanityPathsProcessed.get()) {
                         special = this.resolveMapsMap.get(key);
                     } else {
-                        special = MapEntries.this.getMapEntryList(key); 
+                        final long start = trace != null ? System.nanoTime() : 0;
+                        special = MapEntries.this.getMapEntryList(key);
+                        if (trace != null) {
+                            trace.addStageTime(ResolutionTrace.Stage.VANITY_PATHS, start);
+                        }
                     }
                     if (special != null) {
                         specialIterator = special.iterator();
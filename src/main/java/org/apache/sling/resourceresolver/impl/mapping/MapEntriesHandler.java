@@ -24,7 +24,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Exposes low-level methods used for resource resolving and mapping
@@ -110,6 +112,19 @@ public interface MapEntriesHandler {
      */
     @NotNull Iterator<MapEntry> getResolveMapsIterator(@NotNull String requestPath);
 
+    /**
+     * Creates an iterator over the possibly applicable mapping entries for resolving a resource,
+     * recording the time spent looking up vanity paths in the trace.
+     *
+     * @param requestPath the request path
+     * @param trace the trace or {@code null}
+     * @return the map entry iterator
+     * @see #getResolveMapsIterator(String)
+     */
+    default @NotNull Iterator<MapEntry> getResolveMapsIterator(@NotNull String requestPath, @Nullable ResolutionTrace trace) {
+        return getResolveMapsIterator(requestPath);
+    }
+
     /**
      * Return a flat listing of map entries used for mapping resources to URLs
      *
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.BitSet;
+
+import org.apache.sling.resourceresolver.impl.helper.URI;
+
+/**
+ * Escaping of the path of mapped URIs for the common cases, an absolute path
+ * or a simple {@code scheme://host[:port]/path} URI.
+ *
+ * The result is the same as parsing the unescaped URI with {@link URI}, setting
+ * the path and getting the escaped URI, but the path is escaped in a single
+ * pass without creating the URI object. For all other URIs
+ * {@link #getPathStart(String)} returns {@code -1} and the {@link URI} class
+ * has to be used.
+ *
+ * An instance reuses its buffer and must not be used concurrently.
+ */
+final class MappedPathEscaper {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** The characters not escaped in a path, same as {@link URI#allowed_abs_path}. */
+    private static final BitSet ALLOWED = new BitSet(128);
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ALLOWED.set(c);
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            ALLOWED.set(c);
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ALLOWED.set(c);
+        }
+        for (final char c : "-_.!~*'():@&=$,;/".toCharArray()) {
+            ALLOWED.set(c);
+        }
+    }
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Get the start of the path in a mapped URI
+     * @param uri The unescaped URI
+     * @return The index of the path or {@code -1} if the URI is not an absolute
+     *         path or a simple {@code scheme://host[:port]/path} URI.
+     */
+    static int getPathStart(final String uri) {
+        final int length = uri.length();
+        if ( length == 0 ) {
+            return -1;
+        }
+        final int pathStart;
+        if ( uri.charAt(0) == '/' ) {
+            if ( length > 1 && uri.charAt(1) == '/' ) {
+                return -1;
+            }
+            pathStart = 0;
+        } else {
+            pathStart = getAuthorityEnd(uri);
+            if ( pathStart == -1 ) {
+                return -1;
+            }
+        }
+        for (int i = pathStart; i < length; i++) {
+            final char c = uri.charAt(i);
+            if ( c == '?' || c == '#' ) {
+                return -1;
+            }
+        }
+        return pathStart;
+    }
+
+    /**
+     * Get the end of the authority of a {@code scheme://host[:port]/} URI. The
+     * scheme must be lower case, the host may only contain letters, digits,
+     * dots and dashes and the port must be a number without leading zeros, as
+     * otherwise {@link URI} normalizes them.
+     * @param uri The unescaped URI
+     * @return The index of the slash after the authority or {@code -1}
+     */
+    private static int getAuthorityEnd(final String uri) {
+        final int length = uri.length();
+        int pos = 0;
+        if ( !isLowerCaseLetter(uri.charAt(pos)) ) {
+            return -1;
+        }
+        pos++;
+        while ( pos < length && isSchemeChar(uri.charAt(pos)) ) {
+            pos++;
+        }
+        if ( !uri.startsWith("://", pos) ) {
+            return -1;
+        }
+        pos += 3;
+        final int hostStart = pos;
+        while ( pos < length && isHostChar(uri.charAt(pos)) ) {
+            pos++;
+        }
+        if ( pos == hostStart || pos == length ) {
+            return -1;
+        }
+        if ( uri.charAt(pos) == ':' ) {
+            pos++;
+            final int portStart = pos;
+            while ( pos < length && pos - portStart < 5 && uri.charAt(pos) >= '0' && uri.charAt(pos) <= '9' ) {
+                pos++;
+            }
+            if ( pos == portStart || uri.charAt(portStart) == '0' || pos == length ) {
+                return -1;
+            }
+        }
+        return uri.charAt(pos) == '/' ? pos : -1;
+    }
+
+    private static boolean isLowerCaseLetter(final char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isSchemeChar(final char c) {
+        return isLowerCaseLetter(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+    }
+
+    private static boolean isHostChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.';
+    }
+
+    /**
+     * Create the escaped URI
+     * @param uri The unescaped URI
+     * @param pathStart The start of the path as returned by {@link #getPathStart(String)}
+     * @param contextPath The context path to prepend to the path, might be {@code null}
+     * @param path The path to use instead of the path of the URI
+     * @return The escaped URI
+     */
+    String escape(final String uri, final int pathStart, final String contextPath, final String path) {
+        final boolean hasContextPath = contextPath != null && !contextPath.isEmpty();
+        if ( !hasContextPath && pathStart == 0 && isAllowed(path) ) {
+            return path;
+        }
+        this.buffer.setLength(0);
+        this.buffer.append(uri, 0, pathStart);
+        if ( hasContextPath ) {
+            appendEscaped(contextPath);
+        }
+        appendEscaped(path);
+        return this.buffer.toString();
+    }
+
+    private static boolean isAllowed(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ( c >= 128 || !ALLOWED.get(c) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append the value escaping all characters which are not allowed in a path
+     * as their UTF-8 bytes.
+     */
+    private void appendEscaped(final String value) {
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if ( c < 128 ) {
+                if ( ALLOWED.get(c) ) {
+                    this.buffer.append(c);
+                } else {
+                    appendByte(c);
+                }
+            } else if ( c < 0x800 ) {
+                appendByte(0xC0 | (c >> 6));
+                appendByte(0x80 | (c & 0x3F));
+            } else if ( Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)) ) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(0xF0 | (codePoint >> 18));
+                appendByte(0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(0x80 | (codePoint & 0x3F));
+            } else if ( Character.isSurrogate(c) ) {
+                // unpaired surrogates are replaced when encoding the string to UTF-8
+                appendByte('?');
+            } else {
+                appendByte(0xE0 | (c >> 12));
+                appendByte(0x80 | ((c >> 6) & 0x3F));
+                appendByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void appendByte(final int b) {
+        this.buffer.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -36,11 +36,15 @@ import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.mapping.ResourceMapper;
 import org.apache.sling.resourceresolver.impl.JcrNamespaceMangler;
 import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace.Stage;
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTracer;
 import org.apache.sling.resourceresolver.impl.helper.ResourceDecoratorTracker;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
 import org.apache.sling.resourceresolver.impl.helper.URI;
 import org.apache.sling.resourceresolver.impl.helper.URIException;
 import org.apache.sling.resourceresolver.impl.params.ParsedParameters;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,14 +56,21 @@ public class ResourceMapperImpl implements ResourceMapper {
     private final ResourceDecoratorTracker resourceDecorator;
     private final MapEntriesHandler mapEntries;
     private final Object namespaceMangler;
+    private final ResolutionTracer tracer;
     
 
     public ResourceMapperImpl(ResourceResolverImpl resolver, ResourceDecoratorTracker resourceDecorator, 
             MapEntriesHandler mapEntries, Object namespaceMangler) {
+        this(resolver, resourceDecorator, mapEntries, namespaceMangler, null);
+    }
+
+    public ResourceMapperImpl(ResourceResolverImpl resolver, ResourceDecoratorTracker resourceDecorator, 
+            MapEntriesHandler mapEntries, Object namespaceMangler, @Nullable ResolutionTracer tracer) {
         this.resolver = resolver;
         this.resourceDecorator = resourceDecorator;
         this.mapEntries = mapEntries;
         this.namespaceMangler = namespaceMangler;
+        this.tracer = tracer;
     }
 
     @Override
@@ -86,6 +97,17 @@ public class ResourceMapperImpl implements ResourceMapper {
     public Collection<String> getAllMappings(String resourcePath, HttpServletRequest request) {
         
         resolver.checkClosed();
+
+        if ( tracer == null ) {
+            return getAllMappings(resourcePath, request, null);
+        }
+        final ResolutionTrace trace = tracer.start(ResourceResolverControl.OPERATION_MAP, resourcePath);
+        final Collection<String> mappings = getAllMappings(resourcePath, request, trace);
+        tracer.finish(trace);
+        return mappings;
+    }
+
+    private Collection<String> getAllMappings(String resourcePath, HttpServletRequest request, @Nullable ResolutionTrace trace) {
         
         // A note on the usage of the 'mappings' variable and the order of the results
         //
@@ -139,18 +161,22 @@ public class ResourceMapperImpl implements ResourceMapper {
         ParsedParameters parsed = new ParsedParameters(mappedPath);
 
         // 2. load mappings from the resource path
-        populateMappingsFromMapEntries(mappings, Collections.singletonList(mappedPath), requestContext);
+        populateMappingsFromMapEntries(mappings, Collections.singletonList(mappedPath), requestContext, trace);
         
         // 3. load aliases
-        final Resource nonDecoratedResource = resolver.resolveInternal(parsed.getRawPath(), parsed.getParameters());
+        final Resource nonDecoratedResource = resolver.resolveInternal(parsed.getRawPath(), parsed, trace);
         if (nonDecoratedResource != null) {
+            final long aliasesStart = trace != null ? System.nanoTime() : 0;
             List<String> aliases = loadAliasesIfApplicable(nonDecoratedResource);
+            if ( trace != null ) {
+                trace.addStageTime(Stage.ALIASES, aliasesStart);
+            }
             // ensure that the first declared alias will be returned first
             Collections.reverse(aliases);
             
             // 4. load mappings for alias
             mappings.addAll(aliases);
-            populateMappingsFromMapEntries(mappings, aliases, requestContext);
+            populateMappingsFromMapEntries(mappings, aliases, requestContext, trace);
         }
 
         // 5. add the requested path itself, if not already populated
@@ -158,7 +184,11 @@ public class ResourceMapperImpl implements ResourceMapper {
             mappings.add(0, mappedPath);
         
         // 6. add vanity paths
+        final long vanityPathsStart = trace != null ? System.nanoTime() : 0;
         List<String> vanityPaths = mapEntries.getVanityPathMappings().getOrDefault(mappedPath, Collections.emptyList());
+        if ( trace != null ) {
+            trace.addStageTime(Stage.VANITY_PATHS, vanityPathsStart);
+        }
         // vanity paths are prepended to make sure they get returned last
         mappings.addAll(0, vanityPaths);
 
@@ -262,6 +292,15 @@ public class ResourceMapperImpl implements ResourceMapper {
         }        
     }
 
+    private void populateMappingsFromMapEntries(List<String> mappings, List<String> mappedPathList,
+            final RequestContext requestContext, @Nullable final ResolutionTrace trace) {
+        final long start = trace != null ? System.nanoTime() : 0;
+        populateMappingsFromMapEntries(mappings, mappedPathList, requestContext);
+        if ( trace != null ) {
+            trace.addStageTime(Stage.MAP_ENTRIES, start);
+        }
+    }
+
     private void populateMappingsFromMapEntries(List<String> mappings, List<String> mappedPathList,
             final RequestContext requestContext) {
         boolean mappedPathIsUrl = false;
@@ -345,6 +384,8 @@ public class ResourceMapperImpl implements ResourceMapper {
     private class ApplyContextPath implements UnaryOperator<String> {
         
         private final HttpServletRequest req;
+
+        private final MappedPathEscaper escaper = new MappedPathEscaper();
         
         private ApplyContextPath(HttpServletRequest req) {
             this.req = req;
@@ -354,6 +395,13 @@ public class ResourceMapperImpl implements ResourceMapper {
         public String apply(String path) {
             
             String mappedPath = path;
+
+            // absolute paths and simple URIs are escaped without parsing them
+            final int pathStart = MappedPathEscaper.getPathStart(path);
+            if (pathStart >= 0) {
+                final String contextPath = req != null ? req.getContextPath() : null;
+                return escaper.escape(path, pathStart, contextPath, mangleNamespaces(path.substring(pathStart)));
+            }
             
             // [scheme:][//authority][path][?query][#fragment]
             try {
@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Designate(ocd = StringInterpolationProviderConfiguration.class)
 @Component
@@ -43,11 +44,33 @@ public class StringInterpolationProviderImpl
 
     private static final String DIRECTIVE_DEFAULT = "default";
 
+    /** Maximum number of cached templates */
+    private static final int MAX_TEMPLATES = 10000;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private Map<String, String> placeholderEntries = new HashMap<>();
     private BundleContext context;
 
+    /** The compiled templates by text, cleared on configuration changes */
+    private final Map<String, Interpolator.Template> templates = new ConcurrentHashMap<>();
+
+    private final Interpolator.Provider provider = (type, name, dir) -> {
+        String v = null;
+        if (TYPE_ENV.equals(type)) {
+            v = getVariableFromEnvironment(name);
+        } else if (TYPE_PROP.equals(type)) {
+            v = getVariableFromProperty(name);
+        } else if(TYPE_CONFIG.equals(type)){
+            v = getVariableFromBundleConfiguration(name);
+        }
+        if (v == null) {
+            v = dir.get(DIRECTIVE_DEFAULT);
+        }
+        logger.trace("Return substitution value: '{}'", v);
+        return v;
+    };
+
     // ---------- SCR Integration ---------------------------------------------
 
     /**
@@ -73,6 +96,7 @@ public class StringInterpolationProviderImpl
             }
         }
         this.placeholderEntries = newMap;
+        this.templates.clear();
     }
 
     /**
@@ -90,6 +114,7 @@ public class StringInterpolationProviderImpl
     protected void deactivate(final BundleContext bundleContext) {
         this.context = null;
         this.placeholderEntries = new HashMap<>();
+        this.templates.clear();
     }
 
     /**
@@ -101,21 +126,14 @@ public class StringInterpolationProviderImpl
     @Override
     public String substitute(String text) {
         logger.trace("Substitute: '{}'", text);
-        Object result = Interpolator.replace(text, (type, name, dir) -> {
-            String v = null;
-            if (TYPE_ENV.equals(type)) {
-                v = getVariableFromEnvironment(name);
-            } else if (TYPE_PROP.equals(type)) {
-                v = getVariableFromProperty(name);
-            } else if(TYPE_CONFIG.equals(type)){
-                v = getVariableFromBundleConfiguration(name);
-            }
-            if (v == null) {
-                v = dir.get(DIRECTIVE_DEFAULT);
+        Interpolator.Template template = templates.get(text);
+        if (template == null) {
+            template = Interpolator.compile(text);
+            if (templates.size() < MAX_TEMPLATES) {
+                templates.put(text, template);
             }
-            logger.trace("Return substitution value: '{}'", v);
-            return v;
-        });
+        }
+        Object result = template.replace(provider);
         logger.trace("Substitute result: '{}'", result);
         return result == null ? null : result.toString();
     }
@@ -19,16 +19,23 @@
 package org.apache.sling.resourceresolver.impl.observation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.spi.resource.provider.ObservationReporter;
 import org.apache.sling.spi.resource.provider.ObserverConfiguration;
 import org.slf4j.Logger;
@@ -40,14 +47,28 @@ import org.slf4j.LoggerFactory;
  */
 public class BasicObservationReporter implements ObservationReporter {
 
+    private static final Supplier<Optional<ResourceResolverMetrics>> NO_METRICS = Optional::empty;
+
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /** List of observer configurations for the provider. */
     private final List<ObserverConfiguration> configs;
 
+    /** Path tree to find the configurations for a change. */
+    private final ObserverConfigurationTree configTree;
+
     /** The search path. */
     private final List<String> searchPath;
 
+    /** Dispatcher for asynchronous delivery, {@code null} for synchronous delivery. */
+    private final ResourceChangeListenerDispatcher dispatcher;
+
+    /** Supplier for the metrics. */
+    private final Supplier<Optional<ResourceResolverMetrics>> metrics;
+
+    /** Name of this reporter for the metrics. */
+    private final String name;
+
     /**
      * Create a reporter listening for resource provider changes
      *
@@ -57,7 +78,26 @@ public class BasicObservationReporter implements ObservationReporter {
     public BasicObservationReporter(
             final List<String> searchPath,
             final Collection<ResourceChangeListenerInfo> infos) {
+        this(searchPath, infos, null, NO_METRICS);
+    }
+
+    /**
+     * Create a reporter listening for resource provider changes
+     *
+     * @param searchPath The search path
+     * @param infos The listeners map
+     * @param dispatcher Optional dispatcher for asynchronous delivery
+     * @param metrics Supplier for the metrics
+     */
+    public BasicObservationReporter(
+            final List<String> searchPath,
+            final Collection<ResourceChangeListenerInfo> infos,
+            final ResourceChangeListenerDispatcher dispatcher,
+            final Supplier<Optional<ResourceResolverMetrics>> metrics) {
         this.searchPath = searchPath;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.name = "providers";
         final Set<String> paths = new HashSet<>();
         final List<ResourceChangeListenerInfo> result = new ArrayList<>();
         for(final ResourceChangeListenerInfo info : infos) {
@@ -73,6 +113,7 @@ public class BasicObservationReporter implements ObservationReporter {
             cfg.addListener(i);
         }
         this.configs = Collections.singletonList((ObserverConfiguration)cfg);
+        this.configTree = new ObserverConfigurationTree(this.configs);
     }
 
     /**
@@ -88,9 +129,33 @@ public class BasicObservationReporter implements ObservationReporter {
             final Collection<ResourceChangeListenerInfo> infos,
             final Path providerPath,
             final PathSet excludePaths) {
+        this(searchPath, infos, providerPath, excludePaths, null, NO_METRICS);
+    }
+
+    /**
+     * Create a reporter listening for a provider
+     *
+     * @param searchPath The search paths
+     * @param infos The listeners map
+     * @param providerPath The mount point of the provider
+     * @param excludePaths Excluded paths for that provider
+     * @param dispatcher Optional dispatcher for asynchronous delivery
+     * @param metrics Supplier for the metrics
+     */
+    public BasicObservationReporter(
+            final List<String> searchPath,
+            final Collection<ResourceChangeListenerInfo> infos,
+            final Path providerPath,
+            final PathSet excludePaths,
+            final ResourceChangeListenerDispatcher dispatcher,
+            final Supplier<Optional<ResourceResolverMetrics>> metrics) {
         this.searchPath = searchPath;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.name = providerPath.getPath();
 
-        final List<ObserverConfiguration> observerConfigs = new ArrayList<>();
+        // configurations by paths and property name hints
+        final Map<List<Object>, BasicObserverConfiguration> observerConfigs = new LinkedHashMap<>();
         for(final ResourceChangeListenerInfo info : infos) {
             if ( !info.getResourceChangeTypes().isEmpty() ) {
                 // find the set of paths that match the provider
@@ -122,15 +187,8 @@ public class BasicObservationReporter implements ObservationReporter {
                 if ( !paths.isEmpty() ) {
                     final PathSet pathSet = PathSet.fromPathCollection(paths);
                     // search for an existing configuration with the same paths and hints
-                    BasicObserverConfiguration found = null;
-                    for(final ObserverConfiguration c : observerConfigs) {
-                        if ( c.getPaths().equals(pathSet)
-                            && (( c.getPropertyNamesHint() == null && info.getPropertyNamesHint() == null)
-                               || c.getPropertyNamesHint() != null && c.getPropertyNamesHint().equals(info.getPropertyNamesHint()))) {
-                            found = (BasicObserverConfiguration)c;
-                            break;
-                        }
-                    }
+                    final List<Object> key = Arrays.asList(pathSet, info.getPropertyNamesHint());
+                    final BasicObserverConfiguration found = observerConfigs.get(key);
                     final BasicObserverConfiguration config;
                     if ( found != null ) {
                         // check external and types
@@ -143,7 +201,7 @@ public class BasicObservationReporter implements ObservationReporter {
                         }
                         if ( createNew ) {
                             // create new/updated config
-                            observerConfigs.remove(found);
+                            observerConfigs.remove(key);
                             final Set<ResourceChange.ChangeType> types = new HashSet<>();
                             types.addAll(found.getChangeTypes());
                             types.addAll(info.getResourceChangeTypes());
@@ -152,7 +210,7 @@ public class BasicObservationReporter implements ObservationReporter {
                                 info.isExternal() || found.includeExternal(),
                                 found.getExcludedPaths(),
                                 found.getPropertyNamesHint());
-                            observerConfigs.add(config);
+                            observerConfigs.put(key, config);
                             for(final ResourceChangeListenerInfo i : found.getListeners()) {
                                 config.addListener(i);
                             }
@@ -167,13 +225,14 @@ public class BasicObservationReporter implements ObservationReporter {
                             info.isExternal(),
                             excludePaths.getSubset(pathSet),
                             info.getPropertyNamesHint());
-                        observerConfigs.add(config);
+                        observerConfigs.put(key, config);
                     }
                     config.addListener(info);
                 }
             }
         }
-        this.configs = Collections.unmodifiableList(observerConfigs);
+        this.configs = Collections.unmodifiableList(new ArrayList<ObserverConfiguration>(observerConfigs.values()));
+        this.configTree = new ObserverConfigurationTree(this.configs);
     }
 
     @Override
@@ -183,18 +242,58 @@ public class BasicObservationReporter implements ObservationReporter {
 
     @Override
     public void reportChanges(final Iterable<ResourceChange> changes, final boolean distribute) {
-        for(final ObserverConfiguration cfg : this.configs) {
-            final List<ResourceChange> filteredChanges = filterChanges(changes, cfg);
-            if (!filteredChanges.isEmpty() ) {
-                this.reportChanges(cfg, filteredChanges, distribute);
+        final long start = System.nanoTime();
+        // all configurations share one list of the changes, each gets a view on it
+        final ResourceChangeListImpl all = toChangeList(changes);
+        // route each change to the configurations covering its path
+        final int[][] positions = new int[this.configs.size()][];
+        final int[] counts = new int[this.configs.size()];
+        final BitSet candidates = new BitSet(this.configs.size());
+        for (int pos = 0; pos < all.size(); pos++) {
+            final ResourceChange c = all.get(pos);
+            candidates.clear();
+            this.configTree.collectCandidates(c.getPath(), candidates);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if ( matches(c, this.configs.get(i)) ) {
+                    positions[i] = append(positions[i], counts[i], pos);
+                    counts[i]++;
+                }
+            }
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if ( counts[i] > 0 ) {
+                this.deliver(this.configs.get(i), all.view(positions[i], counts[i]), distribute);
             }
         }
+        reportMetrics(all.size(), start);
     }
 
     @Override
     public void reportChanges(final ObserverConfiguration config,
             final Iterable<ResourceChange> changes,
             final boolean distribute) {
+        final long start = System.nanoTime();
+        final ResourceChangeListImpl all = toChangeList(changes);
+        this.deliver(config, all, distribute);
+        reportMetrics(all.size(), start);
+    }
+
+    private void reportMetrics(final int numberOfChanges, final long start) {
+        final Optional<ResourceResolverMetrics> m = this.metrics.get();
+        if ( m.isPresent() ) {
+            m.get().reportObservationReporting(this.name, numberOfChanges, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Deliver the changes to the listeners of the configuration
+     * @param config The configuration
+     * @param all The changes
+     * @param distribute Distribute flag
+     */
+    private void deliver(final ObserverConfiguration config,
+            final ResourceChangeListImpl all,
+            final boolean distribute) {
         if ( config != null && config instanceof BasicObserverConfiguration ) {
             final BasicObserverConfiguration observerConfig = (BasicObserverConfiguration)config;
 
@@ -202,13 +301,22 @@ public class BasicObservationReporter implements ObservationReporter {
             List<ResourceChange> filteredChanges = null;
             for(final ResourceChangeListenerInfo info : observerConfig.getListeners()) {
                 if ( previousInfo == null || !equals(previousInfo, info) ) {
-                    filteredChanges = filterChanges(changes, info);
+                    filteredChanges = filterChanges(all, info);
                     previousInfo = info;
                 }
                 if ( !filteredChanges.isEmpty() ) {
-                    final ResourceChangeListener listener = info.getListener();
-                    if ( listener != null ) {
-                        listener.onChange(filteredChanges);
+                    if ( this.dispatcher != null ) {
+                        this.dispatcher.dispatch(info, filteredChanges);
+                    } else {
+                        final ResourceChangeListener listener = info.getListener();
+                        if ( listener != null ) {
+                            final long listenerStart = System.nanoTime();
+                            listener.onChange(filteredChanges);
+                            final Optional<ResourceResolverMetrics> m = this.metrics.get();
+                            if ( m.isPresent() ) {
+                                m.get().reportResourceChangeListenerProcessing(info.getName(), filteredChanges.size(), System.nanoTime() - listenerStart);
+                            }
+                        }
                     }
                 }
             }
@@ -237,37 +345,52 @@ public class BasicObservationReporter implements ObservationReporter {
     }
 
     /**
-     * Filter the change list based on the configuration
+     * Filter the change list based on the resource change listener, only type and external needs to be checkd.
      * @param changes The list of changes
-     * @param config The configuration
-     * @return The filtered list.
+     * @param config The resource change listener info
+     * @return The filtered list, a view on the changes.
      */
-    private List<ResourceChange> filterChanges(final Iterable<ResourceChange> changes, final ObserverConfiguration config) {
-        final ResourceChangeListImpl filtered = new ResourceChangeListImpl(this.searchPath);
-        for (final ResourceChange c : changes) {
-            if (matches(c, config)) {
-                filtered.add(c);
+    private List<ResourceChange> filterChanges(final ResourceChangeListImpl changes, final ResourceChangeListenerInfo config) {
+        int[] positions = null;
+        int count = 0;
+        for (int pos = 0; pos < changes.size(); pos++) {
+            if (matches(changes.get(pos), config)) {
+                positions = append(positions, count, pos);
+                count++;
             }
         }
-        filtered.lock();
-        return filtered;
+        return changes.view(positions, count);
     }
 
     /**
-     * Filter the change list based on the resource change listener, only type and external needs to be checkd.
-     * @param changes The list of changes
-     * @param config The resource change listener info
-     * @return The filtered list.
+     * Get the changes as a change list without copying if possible
+     * @param changes The changes
+     * @return The locked change list
      */
-    private List<ResourceChange> filterChanges(final Iterable<ResourceChange> changes, final ResourceChangeListenerInfo config) {
-        final ResourceChangeListImpl filtered = new ResourceChangeListImpl(this.searchPath);
-        for (final ResourceChange c : changes) {
-            if (matches(c, config)) {
-                filtered.add(c);
-            }
+    private ResourceChangeListImpl toChangeList(final Iterable<ResourceChange> changes) {
+        if ( changes instanceof ResourceChangeListImpl ) {
+            final ResourceChangeListImpl list = (ResourceChangeListImpl) changes;
+            list.lock();
+            return list;
+        }
+        return ResourceChangeListImpl.of(this.searchPath, changes);
+    }
+
+    /**
+     * Append a position, growing the array if needed
+     * @param positions The positions or {@code null}
+     * @param count The number of used positions
+     * @param pos The position to append
+     * @return The positions
+     */
+    private static int[] append(int[] positions, final int count, final int pos) {
+        if ( positions == null ) {
+            positions = new int[8];
+        } else if ( count == positions.length ) {
+            positions = Arrays.copyOf(positions, count * 2);
         }
-        filtered.lock();
-        return filtered;
+        positions[count] = pos;
+        return positions;
     }
 
     /**
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+
+/**
+ * Path trie over the paths of a list of observer configurations.
+ *
+ * Each configuration is registered at the node of each of its paths. For a
+ * glob pattern the node of the literal directory before the first wildcard
+ * is used. As a configuration path matches the path itself and everything
+ * below it, the candidates for a changed path are the configurations
+ * registered at the nodes along that path. The candidates still need to be
+ * matched exactly, the tree only avoids looking at configurations whose paths
+ * can't cover a change.
+ */
+public class ObserverConfigurationTree {
+
+    private final Node root = new Node();
+
+    /**
+     * Create a new tree
+     * @param configs The observer configurations
+     */
+    public ObserverConfigurationTree(final List<ObserverConfiguration> configs) {
+        for(int index = 0; index < configs.size(); index++) {
+            for(final Path p : configs.get(index).getPaths()) {
+                this.getOrCreateNode(getLiteralPath(p)).configs.set(index);
+            }
+        }
+    }
+
+    /**
+     * Collect the indexes of all configurations which might cover the path
+     * @param path The changed path
+     * @param result The set to add the indexes of the configurations to
+     */
+    public void collectCandidates(final String path, final BitSet result) {
+        Node node = this.root;
+        result.or(node.configs);
+        int start = 1;
+        while ( node.children != null && start < path.length() ) {
+            int end = path.indexOf('/', start);
+            if ( end == -1 ) {
+                end = path.length();
+            }
+            node = node.children.get(path.substring(start, end));
+            if ( node == null ) {
+                break;
+            }
+            result.or(node.configs);
+            start = end + 1;
+        }
+    }
+
+    private Node getOrCreateNode(final String path) {
+        Node node = this.root;
+        for(final String segment : path.split("/")) {
+            if ( !segment.isEmpty() ) {
+                if ( node.children == null ) {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Get the literal part of the path. For a pattern this is the directory
+     * before the first wildcard, for a relative path the root.
+     * @param p The path
+     * @return The literal path
+     */
+    private static String getLiteralPath(final Path p) {
+        String path = p.getPath();
+        if ( p.isPattern() ) {
+            path = path.substring(Path.GLOB_PREFIX.length());
+            int pos = 0;
+            while ( pos < path.length() && "*?[{\\".indexOf(path.charAt(pos)) == -1 ) {
+                pos++;
+            }
+            if ( pos < path.length() ) {
+                path = path.substring(0, path.lastIndexOf('/', pos) + 1);
+            }
+        }
+        return path.startsWith("/") ? path : "/";
+    }
+
+    private static final class Node {
+
+        final BitSet configs = new BitSet();
+
+        Map<String, Node> children;
+    }
+}
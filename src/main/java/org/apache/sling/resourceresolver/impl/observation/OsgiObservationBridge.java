@@ -18,14 +18,23 @@
  */
 package org.apache.sling.resourceresolver.impl.observation;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
@@ -36,20 +45,24 @@ import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.Designate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@Designate(ocd = OsgiObservationBridgeConfiguration.class)
 @Component(service = ResourceChangeListener.class,
-configurationPolicy = ConfigurationPolicy.IGNORE,
+configurationPolicy = ConfigurationPolicy.OPTIONAL,
 property = {
         Constants.SERVICE_VENDOR + "=The Apache Software Foundation",
         ResourceChangeListener.PATHS + "=/",
@@ -69,15 +82,45 @@ public class OsgiObservationBridge implements ResourceChangeListener, ExternalRe
 
     private ResourceResolver resolver;
 
-    private BlockingQueue<ResourceChange> changesQueue;
+    private volatile BlockingQueue<ResourceChange> changesQueue;
+
+    /** The number of changes dropped as the queue was full. */
+    private final LongAdder droppedChanges = new LongAdder();
+
+    /** Whether changes are currently dropped, to log only once per overflow. */
+    private volatile boolean dropping;
 
     private EventSendingJob job;
 
-    protected void activate() throws LoginException {
+    /** Executor running the event sending job. */
+    private ExecutorService jobExecutor;
+
+    /** Executor for sending the events of a batch in parallel, {@code null} if not used. */
+    private ExecutorService deliveryExecutor;
+
+    private OsgiObservationBridgeConfiguration config;
+
+    private volatile ResourceResolverMetrics metrics;
+
+    protected void activate(final OsgiObservationBridgeConfiguration config) throws LoginException {
+        this.config = config;
         resolver = resolverFactory.getServiceResourceResolver(Collections.<String, Object>singletonMap(ResourceResolverFactory.SUBSERVICE, "observation"));
-        changesQueue = new LinkedBlockingQueue<ResourceChange>();
-        job = new EventSendingJob(changesQueue);
-        Executors.newSingleThreadExecutor().submit(job);
+        changesQueue = new ArrayBlockingQueue<ResourceChange>(Math.max(1, config.queue_size()));
+        if ( !config.post_events() && config.delivery_threads() > 1 ) {
+            deliveryExecutor = Executors.newFixedThreadPool(config.delivery_threads(), newThreadFactory("Apache Sling Resource Change OSGi Event Delivery"));
+        }
+        job = new EventSendingJob(changesQueue, Math.max(1, config.batch_size()));
+        jobExecutor = Executors.newSingleThreadExecutor(newThreadFactory("Apache Sling Resource Change OSGi Event Bridge"));
+        jobExecutor.submit(job);
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            final Thread t = new Thread(r, name + " #" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
     }
 
     @Reference(name = "handlers",
@@ -94,19 +137,169 @@ public class OsgiObservationBridge implements ResourceChangeListener, ExternalRe
         // nothing to do here
     }
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    private void bindResourceResolverMetrics(final ResourceResolverMetrics metrics) {
+        metrics.setNumberOfQueuedOsgiEventsSupplier(() -> {
+            final BlockingQueue<ResourceChange> queue = changesQueue;
+            return queue == null ? 0L : (long) queue.size();
+        });
+        metrics.setNumberOfDroppedOsgiEventsSupplier(droppedChanges::sum);
+        this.metrics = metrics;
+    }
+
+    @SuppressWarnings("unused")
+    private void unbindResourceResolverMetrics(final ResourceResolverMetrics metrics) {
+        metrics.setNumberOfQueuedOsgiEventsSupplier(() -> 0L);
+        metrics.setNumberOfDroppedOsgiEventsSupplier(() -> 0L);
+        if ( this.metrics == metrics ) {
+            this.metrics = null;
+        }
+    }
+
     protected void deactivate() {
-        changesQueue.clear();
         job.stop();
+        changesQueue.clear();
+        jobExecutor.shutdownNow();
+        if ( deliveryExecutor != null ) {
+            deliveryExecutor.shutdownNow();
+            deliveryExecutor = null;
+        }
+        try {
+            // the resolver must not be closed while the job is still using it
+            jobExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch ( final InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
         resolver.close();
     }
 
+    /**
+     * Queue the changes for sending. This is called by the thread of the
+     * provider reporting the changes and therefore never blocks: if the
+     * queue is full, the changes are dropped and counted.
+     */
     @Override
     public void onChange(List<ResourceChange> changes) {
-        changesQueue.addAll(changes);
+        final BlockingQueue<ResourceChange> queue = this.changesQueue;
+        int dropped = 0;
+        for(final ResourceChange change : changes) {
+            if ( !queue.offer(change) ) {
+                dropped++;
+            }
+        }
+        if ( dropped > 0 ) {
+            droppedChanges.add(dropped);
+            if ( !dropping ) {
+                dropping = true;
+                logger.warn("OSGi event queue is full, dropping resource changes. Total dropped: {}", droppedChanges.sum());
+            }
+        } else if ( dropping ) {
+            dropping = false;
+        }
+    }
+
+    /**
+     * Number of changes dropped as the queue was full
+     * @return The number of dropped changes
+     */
+    long getDroppedChanges() {
+        return droppedChanges.sum();
+    }
+
+    /**
+     * Send the events for a batch of changes. The resource types are looked
+     * up for all changes of the batch after a single refresh.
+     * @param batch The changes
+     */
+    private void sendOsgiEvents(final List<ResourceChange> batch) {
+        final long start = System.nanoTime();
+        resolver.refresh();
+        final Map<String, Resource> resources = new HashMap<>();
+        final List<Event> events = new ArrayList<>(batch.size());
+        for(final ResourceChange change : batch) {
+            try {
+                Resource resource = null;
+                if ( change.getType() != ChangeType.REMOVED ) {
+                    if ( resources.containsKey(change.getPath()) ) {
+                        resource = resources.get(change.getPath());
+                    } else {
+                        resource = resolver.getResource(change.getPath());
+                        resources.put(change.getPath(), resource);
+                    }
+                }
+                final Event event = createOsgiEvent(change, resource);
+                if ( event != null ) {
+                    events.add(event);
+                }
+            } catch (Exception e) {
+                logger.error("processOsgiEventQueue: Unexpected problem processing resource change {}", change, e);
+            }
+        }
+        if ( config.post_events() ) {
+            for(final Event event : events) {
+                eventAdmin.postEvent(event);
+            }
+        } else if ( deliveryExecutor == null || events.size() < 2 ) {
+            for(final Event event : events) {
+                sendOsgiEvent(event);
+            }
+        } else {
+            sendOsgiEventsInParallel(events);
+        }
+        final ResourceResolverMetrics m = this.metrics;
+        if ( m != null ) {
+            m.reportOsgiEvents(events.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Send the events using the delivery executor. Events for the same path
+     * are sent by the same thread to keep their order.
+     * @param events The events
+     */
+    private void sendOsgiEventsInParallel(final List<Event> events) {
+        final int threads = config.delivery_threads();
+        final List<List<Event>> partitions = new ArrayList<>(threads);
+        for(int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<Event>());
+        }
+        for(final Event event : events) {
+            final int index = (event.getProperty(SlingConstants.PROPERTY_PATH).hashCode() & Integer.MAX_VALUE) % threads;
+            partitions.get(index).add(event);
+        }
+        final List<Future<?>> futures = new ArrayList<>(threads);
+        for(final List<Event> partition : partitions) {
+            if ( !partition.isEmpty() ) {
+                futures.add(deliveryExecutor.submit(() -> {
+                    for(final Event event : partition) {
+                        sendOsgiEvent(event);
+                    }
+                }));
+            }
+        }
+        // wait for the batch, so batches are delivered in order
+        for(final Future<?> f : futures) {
+            try {
+                f.get();
+            } catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch ( final ExecutionException ee ) {
+                logger.error("processOsgiEventQueue: Unexpected problem sending events", ee.getCause());
+            }
+        }
+    }
+
+    private void sendOsgiEvent(final Event event) {
+        try {
+            eventAdmin.sendEvent(event);
+        } catch (Exception e) {
+            logger.error("processOsgiEventQueue: Unexpected problem sending event {}", event, e);
+        }
     }
 
     @SuppressWarnings("deprecation")
-    private void sendOsgiEvent(ResourceChange change) {
+    private Event createOsgiEvent(final ResourceChange change, final Resource resource) {
         Dictionary<String, Object> props = new Hashtable<String, Object>();
         String topic;
         switch (change.getType()) {
@@ -123,7 +316,7 @@ public class OsgiObservationBridge implements ResourceChangeListener, ExternalRe
             break;
 
         default:
-            return;
+            return null;
         }
 
         props.put(SlingConstants.PROPERTY_PATH, change.getPath());
@@ -139,56 +332,59 @@ public class OsgiObservationBridge implements ResourceChangeListener, ExternalRe
         if ( change.getRemovedPropertyNames() != null ) {
             props.put(SlingConstants.PROPERTY_REMOVED_ATTRIBUTES, change.getRemovedPropertyNames().toArray(new String[change.getRemovedPropertyNames().size()]));
         }
-        if (change.getType() != ChangeType.REMOVED) {
-            Resource resource = resolver.getResource(change.getPath());
-            if (resource == null) {
-                resolver.refresh();
-                resource = resolver.getResource(change.getPath());
+        if (resource != null) {
+            if (resource.getResourceType() != null) {
+                props.put(SlingConstants.PROPERTY_RESOURCE_TYPE, resource.getResourceType());
             }
-            if (resource != null) {
-                if (resource.getResourceType() != null) {
-                    props.put(SlingConstants.PROPERTY_RESOURCE_TYPE, resource.getResourceType());
-                }
-                if (resource.getResourceSuperType() != null) {
-                    props.put(SlingConstants.PROPERTY_RESOURCE_SUPER_TYPE, resource.getResourceSuperType());
-                }
+            if (resource.getResourceSuperType() != null) {
+                props.put(SlingConstants.PROPERTY_RESOURCE_SUPER_TYPE, resource.getResourceSuperType());
             }
         }
         if (change.isExternal()) {
             props.put("event.application", "unknown");
         }
 
-        final Event event = new Event(topic, props);
-        eventAdmin.sendEvent(event);
+        return new Event(topic, props);
     }
 
     private class EventSendingJob implements Runnable {
 
         private final BlockingQueue<ResourceChange> changes;
 
+        private final int batchSize;
+
         private volatile boolean stop;
 
-        public EventSendingJob(BlockingQueue<ResourceChange> changes) {
+        public EventSendingJob(BlockingQueue<ResourceChange> changes, int batchSize) {
             this.changes = changes;
+            this.batchSize = batchSize;
         }
 
         @Override
         public void run() {
+            final List<ResourceChange> batch = new ArrayList<>(batchSize);
             while (!stop) {
                 ResourceChange change = null;
                 try {
                     change = changes.poll(100, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
-                    logger.warn("Interrupted the OSGi runnable", e);
+                    if ( !stop ) {
+                        logger.warn("Interrupted the OSGi runnable", e);
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
                 }
                 if (change == null) {
                     continue;
                 }
+                batch.add(change);
+                changes.drainTo(batch, batchSize - 1);
                 try {
-                    sendOsgiEvent(change);
+                    sendOsgiEvents(batch);
                 } catch (Exception e) {
-                    logger.error("processOsgiEventQueue: Unexpected problem processing resource change {}", change, e);
+                    logger.error("processOsgiEventQueue: Unexpected problem processing resource changes {}", batch, e);
                 }
+                batch.clear();
             }
         }
 
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+@ObjectClassDefinition(
+    name = "Apache Sling Resource Change OSGi Event Bridge",
+    description = "Configures the delivery of resource changes as OSGi events"
+)
+public @interface OsgiObservationBridgeConfiguration {
+
+    @AttributeDefinition(
+        name = "Queue Size",
+        description = "The maximum number of resource changes waiting to be sent as OSGi events. " +
+            "If the queue is full, further changes are dropped until there is space again.")
+    int queue_size() default 10000;
+
+    @AttributeDefinition(
+        name = "Batch Size",
+        description = "The maximum number of resource changes processed together. The resource types " +
+            "of all changes in a batch are looked up after a single refresh of the resource resolver.")
+    int batch_size() default 100;
+
+    @AttributeDefinition(
+        name = "Post Events",
+        description = "If enabled, the events are posted (asynchronous delivery) instead of sent " +
+            "(synchronous delivery) to the event admin.")
+    boolean post_events() default false;
+
+    @AttributeDefinition(
+        name = "Delivery Threads",
+        description = "The number of threads sending the events of a batch. If more than one thread is used, " +
+            "the order of events is only kept for the same path. Ignored if events are posted.")
+    int delivery_threads() default 1;
+}
@@ -18,25 +18,84 @@
  */
 package org.apache.sling.resourceresolver.impl.observation;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
 
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeList;
 
-public class ResourceChangeListImpl implements ResourceChangeList {
+/**
+ * Implementation of the resource change list.
+ *
+ * The changes are kept in an array which is shared between a list and all
+ * views created from it by {@link #view(int[], int)}. A view only holds the
+ * indexes of its changes in the shared array. Once locked, a list is immutable.
+ */
+public class ResourceChangeListImpl extends AbstractList<ResourceChange> implements ResourceChangeList {
+
+    private static final int[] ALL = new int[0];
 
     private final List<String> searchPath;
 
     private boolean locked = false;
 
-    private final ArrayList<ResourceChange> list = new ArrayList<>();
+    /** The shared changes. */
+    private ResourceChange[] changes;
+
+    /** Indexes into the shared changes or {@link #ALL} for the first {@link #size} changes. */
+    private final int[] indexes;
+
+    private int size;
 
     public ResourceChangeListImpl(final List<String> searchPath) {
+        this(searchPath, new ResourceChange[10], ALL, 0);
+    }
+
+    private ResourceChangeListImpl(final List<String> searchPath,
+            final ResourceChange[] changes,
+            final int[] indexes,
+            final int size) {
         this.searchPath = searchPath;
+        this.changes = changes;
+        this.indexes = indexes;
+        this.size = size;
+    }
+
+    /**
+     * Create a locked list containing the changes
+     * @param searchPath The search path
+     * @param changes The changes
+     * @return The list
+     */
+    public static ResourceChangeListImpl of(final List<String> searchPath, final Iterable<ResourceChange> changes) {
+        final ResourceChangeListImpl result = new ResourceChangeListImpl(searchPath);
+        for(final ResourceChange c : changes) {
+            result.add(c);
+        }
+        result.lock();
+        return result;
+    }
+
+    /**
+     * Create a locked view of this list. The view shares the changes with this list.
+     * This list is locked as well.
+     * @param positions The ascending positions in this list to include in the view
+     * @param count The number of positions to use
+     * @return The view, this list if it contains all changes
+     */
+    public ResourceChangeListImpl view(final int[] positions, final int count) {
+        this.lock();
+        if ( count == this.size ) {
+            return this;
+        }
+        final int[] viewIndexes = new int[count];
+        for(int i = 0; i < count; i++) {
+            viewIndexes[i] = this.indexes == ALL ? positions[i] : this.indexes[positions[i]];
+        }
+        final ResourceChangeListImpl result = new ResourceChangeListImpl(this.searchPath, this.changes, viewIndexes, count);
+        result.lock();
+        return result;
     }
 
     public void lock() {
@@ -45,32 +104,7 @@ public class ResourceChangeListImpl implements ResourceChangeList {
 
     @Override
     public int size() {
-        return list.size();
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return list.isEmpty();
-    }
-
-    @Override
-    public boolean contains(final Object o) {
-        return list.contains(o);
-    }
-
-    @Override
-    public Iterator<ResourceChange> iterator() {
-        return list.iterator();
-    }
-
-    @Override
-    public Object[] toArray() {
-        return list.toArray();
-    }
-
-    @Override
-    public <T> T[] toArray(final T[] a) {
-        return list.toArray(a);
+        return this.size;
     }
 
     @Override
@@ -78,150 +112,24 @@ public class ResourceChangeListImpl implements ResourceChangeList {
         if ( this.locked ) {
             throw new UnsupportedOperationException();
         }
-        return list.add(e);
-    }
-
-    @Override
-    public boolean remove(final Object o) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean containsAll(final Collection<?> c) {
-        return list.containsAll(c);
-    }
-
-    @Override
-    public boolean addAll(final Collection<? extends ResourceChange> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean addAll(final int index, final Collection<? extends ResourceChange> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean removeAll(final Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean retainAll(final Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public void clear() {
-        throw new UnsupportedOperationException();
+        if ( this.size == this.changes.length ) {
+            this.changes = Arrays.copyOf(this.changes, this.size * 2);
+        }
+        this.changes[this.size++] = e;
+        this.modCount++;
+        return true;
     }
 
     @Override
     public ResourceChange get(final int index) {
-        return list.get(index);
-    }
-
-    @Override
-    public ResourceChange set(final int index, final ResourceChange element) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public void add(final int index, final ResourceChange element) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public ResourceChange remove(final int index) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public int indexOf(final Object o) {
-        return list.indexOf(o);
-    }
-
-    @Override
-    public int lastIndexOf(final Object o) {
-        return list.lastIndexOf(o);
-    }
-
-    @Override
-    public ListIterator<ResourceChange> listIterator() {
-        return new UnmodifiableListIterator(list.listIterator());
-    }
-
-    @Override
-    public ListIterator<ResourceChange> listIterator(final int index) {
-        return new UnmodifiableListIterator(list.listIterator(index));
-    }
-
-    @Override
-    public List<ResourceChange> subList(final int fromIndex, final int toIndex) {
-        return list.subList(fromIndex, toIndex);
+        if ( index < 0 || index >= this.size ) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.changes[this.indexes == ALL ? index : this.indexes[index]];
     }
 
     @Override
     public String[] getSearchPath() {
         return this.searchPath.toArray(new String[this.searchPath.size()]);
     }
-
-    @Override
-    public String toString() {
-        return list.toString();
-    }
-
-    private static final class UnmodifiableListIterator implements ListIterator<ResourceChange> {
-
-        private final ListIterator<ResourceChange> iterator;
-
-        public UnmodifiableListIterator(final ListIterator<ResourceChange> i) {
-            this.iterator = i;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return iterator.hasNext();
-        }
-
-        @Override
-        public ResourceChange next() {
-            return iterator.next();
-        }
-
-        @Override
-        public boolean hasPrevious() {
-            return iterator.hasPrevious();
-        }
-
-        @Override
-        public ResourceChange previous() {
-            return iterator.previous();
-        }
-
-        @Override
-        public int nextIndex() {
-            return iterator.nextIndex();
-        }
-
-        @Override
-        public int previousIndex() {
-            return iterator.previousIndex();
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void set(final ResourceChange e) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void add(final ResourceChange e) {
-            throw new UnsupportedOperationException();
-        }
-    }
 }
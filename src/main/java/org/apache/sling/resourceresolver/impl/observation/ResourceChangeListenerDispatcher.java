@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous delivery of resource changes to the listeners.
+ *
+ * Each listener gets its own bounded queue of change lists. A queue is
+ * processed by at most one thread at a time, so a listener receives its
+ * changes in order, while a slow listener neither delays other listeners
+ * nor the provider reporting the changes. If the queue of a listener is full,
+ * new changes are merged into the last queued change list. Once that list
+ * holds the maximum number of coalesced changes, further changes for the
+ * listener are dropped and counted until the queue has been drained.
+ *
+ * The queues are processed by a bounded number of threads. A queue gives
+ * up its thread after delivering a queue length of change lists, so busy
+ * listeners can not starve others.
+ */
+public class ResourceChangeListenerDispatcher {
+
+    /** The maximum number of changes merged into the last queued change list. */
+    private static final int MAX_COALESCED_CHANGES = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final List<String> searchPath;
+
+    private final int maxQueueSize;
+
+    private final int maxCoalescedChanges;
+
+    private final Supplier<Optional<ResourceResolverMetrics>> metrics;
+
+    private final ThreadPoolExecutor executor;
+
+    /** The number of dropped changes. */
+    private final LongAdder droppedChanges = new LongAdder();
+
+    /** The queues, per listener info (identity). */
+    private final Map<ResourceChangeListenerInfo, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new dispatcher
+     * @param searchPath The search path
+     * @param maxQueueSize The maximum number of queued change lists per listener
+     * @param metrics Supplier for the metrics
+     */
+    public ResourceChangeListenerDispatcher(final List<String> searchPath,
+            final int maxQueueSize,
+            final Supplier<Optional<ResourceResolverMetrics>> metrics) {
+        this(searchPath, maxQueueSize, MAX_COALESCED_CHANGES, Math.max(2, Runtime.getRuntime().availableProcessors()), metrics);
+    }
+
+    /**
+     * Create a new dispatcher
+     * @param searchPath The search path
+     * @param maxQueueSize The maximum number of queued change lists per listener
+     * @param maxCoalescedChanges The maximum number of changes in a coalesced change list
+     * @param maxThreads The maximum number of delivering threads
+     * @param metrics Supplier for the metrics
+     */
+    ResourceChangeListenerDispatcher(final List<String> searchPath,
+            final int maxQueueSize,
+            final int maxCoalescedChanges,
+            final int maxThreads,
+            final Supplier<Optional<ResourceResolverMetrics>> metrics) {
+        this.searchPath = searchPath;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.maxCoalescedChanges = maxCoalescedChanges;
+        this.metrics = metrics;
+        final AtomicInteger threadCount = new AtomicInteger();
+        // each queue is scheduled at most once, so the task queue is bounded by the number of listeners
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread t = new Thread(r, "Apache Sling Resource Change Listener Dispatcher #" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue the changes for a listener. Changes for a listener which
+     * has already been removed are ignored.
+     * @param info The listener info
+     * @param changes The locked list of changes
+     */
+    public void dispatch(final ResourceChangeListenerInfo info, final List<ResourceChange> changes) {
+        if ( this.executor.isShutdown() || info.getListener() == null ) {
+            return;
+        }
+        ListenerQueue queue = this.queues.get(info);
+        if ( queue == null ) {
+            queue = this.queues.computeIfAbsent(info, ListenerQueue::new);
+            if ( info.getListener() == null ) {
+                // removed concurrently
+                this.remove(info);
+                return;
+            }
+        }
+        queue.add(changes);
+    }
+
+    /**
+     * Remove the queue of a listener. Queued changes are discarded.
+     * The listener of the info has to be cleared before, see
+     * {@link ResourceChangeListenerInfo#clearListener()}, so that
+     * no new queue is created for it.
+     * @param info The listener info
+     */
+    public void remove(final ResourceChangeListenerInfo info) {
+        final ListenerQueue queue = this.queues.remove(info);
+        if ( queue != null ) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Stop the delivery, queued changes are discarded.
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+        for(final ListenerQueue queue : this.queues.values()) {
+            queue.clear();
+        }
+        this.queues.clear();
+    }
+
+    /**
+     * Number of queued change lists for a listener
+     * @param info The listener info
+     * @return The number of queued change lists
+     */
+    public int getQueueSize(final ResourceChangeListenerInfo info) {
+        final ListenerQueue queue = this.queues.get(info);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Number of changes dropped as the queue of a listener was full
+     * @return The number of dropped changes
+     */
+    public long getDroppedChanges() {
+        return this.droppedChanges.sum();
+    }
+
+    /**
+     * Queued changes and the time they were queued
+     */
+    private static final class QueueEntry {
+
+        final List<ResourceChange> changes;
+
+        final long queued;
+
+        /** Whether further changes can be merged into the list, which is locked once polled. */
+        final boolean coalesced;
+
+        QueueEntry(final List<ResourceChange> changes, final long queued, final boolean coalesced) {
+            this.changes = changes;
+            this.queued = queued;
+            this.coalesced = coalesced;
+        }
+    }
+
+    private final class ListenerQueue implements Runnable {
+
+        private final ResourceChangeListenerInfo info;
+
+        private final Deque<QueueEntry> entries = new ArrayDeque<>();
+
+        /** Whether the queue is scheduled for processing. */
+        private boolean scheduled;
+
+        /** Whether changes are dropped until the queue has been drained. */
+        private boolean dropping;
+
+        ListenerQueue(final ResourceChangeListenerInfo info) {
+            this.info = info;
+        }
+
+        void add(final List<ResourceChange> changes) {
+            final boolean schedule;
+            final int depth;
+            boolean drop = false;
+            synchronized ( this ) {
+                if ( this.dropping ) {
+                    // the queue overflowed, drop everything until it has been drained
+                    droppedChanges.add(changes.size());
+                } else if ( this.entries.size() >= maxQueueSize ) {
+                    // coalesce with the last entry, keeping the time the oldest changes were queued
+                    QueueEntry last = this.entries.peekLast();
+                    if ( last.changes.size() + changes.size() > maxCoalescedChanges ) {
+                        drop = true;
+                        this.dropping = true;
+                        droppedChanges.add(changes.size());
+                    } else {
+                        if ( !last.coalesced ) {
+                            // copy the last entry once, further changes are appended to the copy
+                            this.entries.pollLast();
+                            final ResourceChangeListImpl merged = new ResourceChangeListImpl(searchPath);
+                            merged.addAll(last.changes);
+                            last = new QueueEntry(merged, last.queued, true);
+                            this.entries.add(last);
+                        }
+                        last.changes.addAll(changes);
+                    }
+                } else {
+                    this.entries.add(new QueueEntry(changes, System.nanoTime(), false));
+                }
+                depth = this.entries.size();
+                schedule = !this.scheduled;
+                this.scheduled = true;
+            }
+            if ( drop ) {
+                logger.warn("Queue of resource change listener {} is full, dropping changes until it is drained", this.info.getName());
+            }
+            if ( metrics.get().isPresent() ) {
+                metrics.get().get().reportResourceChangeListenerQueueDepth(this.info.getName(), depth);
+            }
+            if ( schedule ) {
+                try {
+                    executor.execute(this);
+                } catch ( final RejectedExecutionException ree ) {
+                    // dispatcher is shut down
+                    clear();
+                }
+            }
+        }
+
+        synchronized int size() {
+            return this.entries.size();
+        }
+
+        synchronized void clear() {
+            this.entries.clear();
+            this.scheduled = false;
+            this.dropping = false;
+        }
+
+        @Override
+        public void run() {
+            for(int delivered = 0; ; delivered++) {
+                final QueueEntry entry;
+                synchronized ( this ) {
+                    if ( delivered == maxQueueSize && !this.entries.isEmpty() ) {
+                        // give other listeners a chance, the queue stays scheduled
+                        try {
+                            executor.execute(this);
+                        } catch ( final RejectedExecutionException ree ) {
+                            // dispatcher is shut down
+                            this.clear();
+                        }
+                        return;
+                    }
+                    entry = this.entries.poll();
+                    if ( entry == null ) {
+                        this.scheduled = false;
+                        this.dropping = false;
+                        return;
+                    }
+                    if ( entry.coalesced ) {
+                        ((ResourceChangeListImpl) entry.changes).lock();
+                    }
+                }
+                final ResourceChangeListener listener = this.info.getListener();
+                if ( listener != null ) {
+                    final long start = System.nanoTime();
+                    try {
+                        listener.onChange(entry.changes);
+                    } catch ( final Throwable t ) {
+                        logger.warn("Resource change listener " + listener + " failed to process changes", t);
+                    }
+                    final Optional<ResourceResolverMetrics> m = metrics.get();
+                    if ( m.isPresent() ) {
+                        m.get().reportResourceChangeListenerLag(this.info.getName(), start - entry.queued);
+                        m.get().reportResourceChangeListenerProcessing(this.info.getName(), entry.changes.size(), System.nanoTime() - start);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.api.resource.path.PathSet;
 import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceReference;
 
 /**
@@ -44,6 +45,12 @@ import org.osgi.framework.ServiceReference;
  */
 public class ResourceChangeListenerInfo implements Comparable<ResourceChangeListenerInfo> {
 
+    /** Service property set by declarative services, the name of the component. */
+    private static final String COMPONENT_NAME = "component.name";
+
+    /** Name of a listener without component and bundle name. */
+    static final String UNKNOWN_NAME = "unknown";
+
     private static final Set<ChangeType> DEFAULT_CHANGE_RESOURCE_TYPES = EnumSet.of(ChangeType.ADDED, ChangeType.REMOVED, ChangeType.CHANGED);
 
     private static final Set<ChangeType> DEFAULT_CHANGE_PROVIDER_TYPES = EnumSet.of(ChangeType.PROVIDER_ADDED, ChangeType.PROVIDER_REMOVED);
@@ -58,6 +65,9 @@ public class ResourceChangeListenerInfo implements Comparable<ResourceChangeList
 
     private final boolean valid;
 
+    /** Name of the listener for the metrics. */
+    private final String name;
+
     private volatile boolean external = false;
 
     private volatile ResourceChangeListener listener;
@@ -160,6 +170,35 @@ public class ResourceChangeListenerInfo implements Comparable<ResourceChangeList
             this.propertyNamesHint = null;
         }
         this.valid = configValid;
+        this.name = getName(ref);
+    }
+
+    /**
+     * Get a name for the listener which is stable across restarts, to keep
+     * the number of metrics per listener bounded.
+     * @param ref The service reference
+     * @return The component name, the symbolic name of the registering bundle
+     *         or {@link #UNKNOWN_NAME}
+     */
+    private static String getName(final ServiceReference<ResourceChangeListener> ref) {
+        final Object componentName = ref.getProperty(COMPONENT_NAME);
+        if ( componentName != null ) {
+            return componentName.toString();
+        }
+        final Bundle bundle = ref.getBundle();
+        if ( bundle != null && bundle.getSymbolicName() != null ) {
+            return bundle.getSymbolicName();
+        }
+        return UNKNOWN_NAME;
+    }
+
+    /**
+     * The name of the listener, either the component name or the symbolic
+     * name of the bundle registering it
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
     }
 
     public boolean isValid() {
@@ -199,6 +238,14 @@ public class ResourceChangeListenerInfo implements Comparable<ResourceChangeList
         this.external = listener instanceof ExternalResourceChangeListener;
     }
 
+    /**
+     * Clear the listener once it has been unregistered. The other
+     * information is kept, as reporters might still refer to it.
+     */
+    public void clearListener() {
+        this.listener = null;
+    }
+
     private int compareSet(final Set<String> t, final Set<String> o) {
         if ( t == null && o == null ) {
             return 0;
@@ -18,15 +18,26 @@
  */
 package org.apache.sling.resourceresolver.impl.observation;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker.ObservationReporterGenerator;
 import org.apache.sling.spi.resource.provider.ObservationReporter;
@@ -40,9 +51,19 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Tracker component for the resource change listeners.
+ *
+ * The reporters of the providers are rebuilt after a short delay, collecting
+ * further listeners added or removed meanwhile into a single rebuild. An added
+ * listener therefore receives changes once the delay has passed. A removed
+ * listener is cleared immediately, so existing reporters skip it until they
+ * are rebuilt. Only the reporters of providers whose path overlaps a changed
+ * listener are recreated.
  */
 public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker.ObservationReporterGenerator {
 
+    /** Delay in milliseconds to collect listener changes before the reporters are rebuilt. */
+    private static final long UPDATE_DELAY = 100;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final Map<ServiceReference<ResourceChangeListener>, ResourceChangeListenerInfo> listeners = new ConcurrentHashMap<>();
@@ -53,12 +74,59 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
 
     private volatile List<String> searchPath;
 
+    /** Dispatcher for asynchronous delivery, {@code null} for synchronous delivery. */
+    private volatile ResourceChangeListenerDispatcher dispatcher;
+
+    private volatile Supplier<Optional<ResourceResolverMetrics>> metrics = Optional::empty;
+
+    /** Reporters per provider path and excludes, reused as long as the relevant listeners do not change. */
+    private final Map<List<Object>, CachedReporter> reporters = new ConcurrentHashMap<>();
+
+    /** The keys of the reporters requested during an update, {@code null} outside of an update. */
+    private volatile Set<List<Object>> usedReporters;
+
+    /** Lock serializing the updates of the provider tracker. */
+    private final Object updateLock = new Object();
+
+    /** Flag whether an update of the provider tracker is scheduled. */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+
+    /** Executor for the delayed update of the provider tracker. */
+    private volatile ScheduledExecutorService updateExecutor;
+
+    /** Flag whether the tracker is being opened, no updates are scheduled meanwhile. */
+    private volatile boolean opening;
+
     public void activate(final BundleContext bundleContext,
             final ResourceProviderTracker resourceProviderTracker,
             final List<String> searchPath) {
+        this.activate(bundleContext, resourceProviderTracker, searchPath, null, Optional::empty);
+    }
+
+    /**
+     * Activate the whiteboard
+     * @param bundleContext The bundle context
+     * @param resourceProviderTracker The provider tracker
+     * @param searchPath The search path
+     * @param dispatcher Optional dispatcher for asynchronous delivery of changes
+     * @param metrics Supplier for the metrics
+     */
+    public void activate(final BundleContext bundleContext,
+            final ResourceProviderTracker resourceProviderTracker,
+            final List<String> searchPath,
+            final ResourceChangeListenerDispatcher dispatcher,
+            final Supplier<Optional<ResourceResolverMetrics>> metrics) {
         this.searchPath = searchPath;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.reporters.clear();
+        this.updateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "Apache Sling Resource Change Listener Whiteboard Updater");
+            t.setDaemon(true);
+            return t;
+        });
         this.resourceProviderTracker = resourceProviderTracker;
-        this.resourceProviderTracker.setObservationReporterGenerator(this);
+        this.opening = true;
         this.tracker = new ServiceTracker<>(bundleContext,
                 ResourceChangeListener.class,
                 new ServiceTrackerCustomizer<ResourceChangeListener, ServiceReference<ResourceChangeListener>>() {
@@ -67,7 +135,12 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
             public void removedService(final ServiceReference<ResourceChangeListener> reference, final ServiceReference<ResourceChangeListener> service) {
                 final ResourceChangeListenerInfo info = listeners.remove(reference);
                 if ( info != null ) {
-                    updateProviderTracker();
+                    // existing reporters skip the cleared listener until they are rebuilt
+                    info.clearListener();
+                    scheduleUpdate();
+                    if ( dispatcher != null ) {
+                        dispatcher.remove(info);
+                    }
                 }
             }
 
@@ -85,7 +158,7 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
                     if ( listener != null ) {
                         info.setListener(listener);
                         listeners.put(reference, info);
-                        updateProviderTracker();
+                        scheduleUpdate();
                     }
                 } else {
                     logger.warn("Ignoring invalid resource change listener {}", reference);
@@ -94,6 +167,9 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
             }
         });
         this.tracker.open();
+        this.opening = false;
+        // all listeners found while opening the tracker are applied at once
+        this.updateProviderTracker();
     }
 
     public void deactivate() {
@@ -101,22 +177,114 @@ public class ResourceChangeListenerWhiteboard implements ResourceProviderTracker
             this.tracker.close();
             this.tracker = null;
         }
+        if ( this.updateExecutor != null ) {
+            this.updateExecutor.shutdownNow();
+            this.updateExecutor = null;
+        }
+        this.updatePending.set(false);
+        this.reporters.clear();
         this.resourceProviderTracker.setObservationReporterGenerator(NOP_GENERATOR);
         this.resourceProviderTracker = null;
+        if ( this.dispatcher != null ) {
+            this.dispatcher.shutdown();
+            this.dispatcher = null;
+        }
     }
 
+    /**
+     * Schedule an update of the provider tracker. Listeners added or removed
+     * within a short delay are collected into a single update.
+     */
+    private void scheduleUpdate() {
+        final ScheduledExecutorService executor = this.updateExecutor;
+        if ( this.opening || executor == null || !this.updatePending.compareAndSet(false, true) ) {
+            return;
+        }
+        try {
+            executor.schedule(() -> {
+                updatePending.set(false);
+                updateProviderTracker();
+            }, UPDATE_DELAY, TimeUnit.MILLISECONDS);
+        } catch ( final RejectedExecutionException ree ) {
+            // deactivated
+            this.updatePending.set(false);
+        }
+    }
+
+    /**
+     * Update the reporters of the provider tracker. Cached reporters which
+     * have not been requested for any provider are removed afterwards.
+     */
     private void updateProviderTracker() {
-        this.resourceProviderTracker.setObservationReporterGenerator(this);
+        final ResourceProviderTracker rpt = this.resourceProviderTracker;
+        if ( rpt == null ) {
+            return;
+        }
+        synchronized ( this.updateLock ) {
+            final Set<List<Object>> used = ConcurrentHashMap.newKeySet();
+            this.usedReporters = used;
+            try {
+                rpt.setObservationReporterGenerator(this);
+            } finally {
+                this.usedReporters = null;
+            }
+            this.reporters.keySet().retainAll(used);
+        }
     }
 
+    /**
+     * Create the reporter for a provider. If the listeners relevant for the
+     * provider did not change since the last call, the previous reporter is returned.
+     */
     @Override
     public ObservationReporter create(final Path path, final PathSet excludes) {
-        return new BasicObservationReporter(this.searchPath, this.listeners.values(), path, excludes);
+        final Set<ResourceChangeListenerInfo> relevant = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(final ResourceChangeListenerInfo info : this.listeners.values()) {
+            if ( !info.getResourceChangeTypes().isEmpty() && overlaps(info, path) ) {
+                relevant.add(info);
+            }
+        }
+        final List<Object> key = Arrays.asList(path.getPath(), excludes);
+        final Set<List<Object>> used = this.usedReporters;
+        if ( used != null ) {
+            used.add(key);
+        }
+        final CachedReporter cached = this.reporters.get(key);
+        if ( cached != null && cached.infos.equals(relevant) ) {
+            return cached.reporter;
+        }
+        final ObservationReporter reporter = new BasicObservationReporter(this.searchPath, relevant, path, excludes, this.dispatcher, this.metrics);
+        this.reporters.put(key, new CachedReporter(relevant, reporter));
+        return reporter;
+    }
+
+    /**
+     * Check whether one of the paths of the listener intersects with the provider path
+     */
+    private static boolean overlaps(final ResourceChangeListenerInfo info, final Path providerPath) {
+        for(final Path p : info.getPaths()) {
+            if ( providerPath.matches(p.getPath()) || (!p.isPattern() && p.matches(providerPath.getPath())) ) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public ObservationReporter createProviderReporter() {
-        return new BasicObservationReporter(this.searchPath, this.listeners.values());
+        return new BasicObservationReporter(this.searchPath, this.listeners.values(), this.dispatcher, this.metrics);
+    }
+
+    private static final class CachedReporter {
+
+        final Set<ResourceChangeListenerInfo> infos;
+
+        final ObservationReporter reporter;
+
+        CachedReporter(final Set<ResourceChangeListenerInfo> infos, final ObservationReporter reporter) {
+            this.infos = infos;
+            this.reporter = reporter;
+        }
     }
 
     private static final ObservationReporter EMPTY_REPORTER = new ObservationReporter() {
@@ -36,6 +36,8 @@ public class ParsedParameters {
 
     private final String path;
 
+    private final int[] dots;
+
     /**
      * Parse path and create parameters object.
      * 
@@ -48,6 +50,7 @@ public class ParsedParameters {
         parametersString = parser.getParametersString();
         parameters = parser.getParameters();
         path = parser.getPath();
+        dots = parser.getDots();
     }
 
     /**
@@ -71,4 +74,14 @@ public class ParsedParameters {
         return parameters;
     }
 
+    /**
+     * The positions of the dots in the raw path, as found while parsing the path.
+     * The returned array must not be modified.
+     *
+     * @return Positions of the dots in the raw path, in ascending order.
+     */
+    public int[] getDots() {
+        return dots;
+    }
+
 }
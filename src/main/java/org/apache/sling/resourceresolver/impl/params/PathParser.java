@@ -19,6 +19,7 @@
 
 package org.apache.sling.resourceresolver.impl.params;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
@@ -39,6 +40,10 @@ class PathParser {
 
     private Map<String, String> parameters;
 
+    private static final int[] NO_DOTS = new int[0];
+
+    private int[] dots;
+
     /**
      * @return Path with no parameters.
      */
@@ -60,6 +65,13 @@ class PathParser {
         return parameters;
     }
 
+    /**
+     * @return The positions of the dots in the path with no parameters, in ascending order.
+     */
+    public int[] getDots() {
+        return dots;
+    }
+
     /**
      * Parses path containing parameters. Results will be available in {@link #rawPath} and {@link parameters}.
      * 
@@ -68,18 +80,36 @@ class PathParser {
     public void parse(String path) {
         this.rawPath = path;
         this.parameters = Collections.emptyMap();
+        this.dots = NO_DOTS;
 
         if (path == null) {
             return;
         }
 
-        // indexOf shortcut for the most common case
-        final int si = path.indexOf(';');
+        // record the dots and look for parameters in one pass
+        int si = -1;
+        int dotCount = 0;
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c == '.') {
+                if (dotCount == this.dots.length) {
+                    this.dots = Arrays.copyOf(this.dots, Math.max(4, dotCount * 2));
+                }
+                this.dots[dotCount++] = i;
+            } else if (c == ';' && si == -1) {
+                si = i;
+            }
+        }
+        if (dotCount < this.dots.length) {
+            this.dots = Arrays.copyOf(this.dots, dotCount);
+        }
+
+        // shortcut for the most common case
         if (si == -1) {
             return;
         }
 
-        final int di = path.indexOf('.');
+        final int di = this.dots.length > 0 ? this.dots[0] : -1;
         final char[] chars = path.toCharArray();
         final ParametersParser parametersParser = new ParametersParser();
 
@@ -161,9 +191,28 @@ class PathParser {
         } else if (to == -1) {
             rawPath = path.substring(0, from);
             parametersString = path.substring(from);
+            cutDots(from, path.length());
         } else {
             rawPath = path.substring(0, from) + path.substring(to);
             parametersString = path.substring(from, to);
+            cutDots(from, to);
+        }
+    }
+
+    /**
+     * Remove the dots within the cut off parameters and move the following dots
+     */
+    private void cutDots(int from, int to) {
+        int count = 0;
+        for (final int dot : dots) {
+            if (dot < from) {
+                dots[count++] = dot;
+            } else if (dot >= to) {
+                dots[count++] = dot - (to - from);
+            }
+        }
+        if (count < dots.length) {
+            dots = Arrays.copyOf(dots, count);
         }
     }
 
@@ -31,9 +31,33 @@ public class ProviderContextImpl implements ProviderContext {
 
     private volatile PathSet excludedPaths;
 
+    /** The reporter as created by the generator, before wrapping. */
+    private volatile ObservationReporter generatedReporter;
+
     public void update(final ObservationReporter observationReporter, PathSet excludedPaths) {
+        this.update(observationReporter, excludedPaths, observationReporter);
+    }
+
+    /**
+     * Update the context
+     * @param observationReporter The reporter
+     * @param excludedPaths The excluded paths
+     * @param generatedReporter The reporter as created by the generator
+     */
+    public void update(final ObservationReporter observationReporter, PathSet excludedPaths, final ObservationReporter generatedReporter) {
         this.observationReporter = observationReporter;
         this.excludedPaths = excludedPaths;
+        this.generatedReporter = generatedReporter;
+    }
+
+    /**
+     * Check whether the context is already using the reporter and excluded paths
+     * @param generatedReporter The reporter as created by the generator
+     * @param excludedPaths The excluded paths
+     * @return {@code true} if nothing changed
+     */
+    public boolean isUpToDate(final ObservationReporter generatedReporter, final PathSet excludedPaths) {
+        return this.generatedReporter == generatedReporter && excludedPaths.equals(this.excludedPaths);
     }
 
     @Override
@@ -0,0 +1,576 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.providers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.resourceresolver.impl.observation.BasicObserverConfiguration;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-through cache for the results of {@code getResource} and
+ * {@code listChildren} of a single resource provider.
+ *
+ * The cache is enabled by setting {@link ResourceProviderInfo#PROPERTY_CACHE_TTL}
+ * on the resource provider service. Entries are kept per user id, expire after
+ * the configured time to live and are evicted in least recently used order once
+ * more than {@link ResourceProviderInfo#PROPERTY_CACHE_SIZE} resources are cached;
+ * a list of children counts with each of its children. Lists of children with
+ * more than {@link #MAX_CACHED_CHILDREN} entries are not cached. Changes reported
+ * by the provider through its observation reporter invalidate the affected entries,
+ * and results loaded while an invalidation happened are not cached.
+ *
+ * The cache holds a copy of the data of a resource (path, types, metadata and
+ * properties), not the resource returned by the provider. Cached resources are
+ * handed out bound to the calling resource resolver, adapting them to anything
+ * other than a {@link ValueMap} or {@link Map} goes through the adapter manager.
+ * Therefore a provider should only enable caching if its resources are plain
+ * data which does not depend on the resolver they have been created for.
+ */
+public class ResourceProviderCache {
+
+    /** Above this number of changes in one batch, the whole cache is cleared. */
+    private static final int MAX_SELECTIVE_INVALIDATIONS = 100;
+
+    /** Lists of children with more entries are not cached. */
+    public static final int MAX_CACHED_CHILDREN = 100;
+
+    private final long ttl;
+
+    private final int maxSize;
+
+    /** All entries in least recently used order, guarded by itself. */
+    private final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The keys of the entries by path, guarded by {@link #entries}. */
+    private final TreeMap<String, Set<CacheKey>> keysByPath = new TreeMap<>();
+
+    /** The number of cached resources, guarded by {@link #entries}. */
+    private int weight;
+
+    /** Incremented on each invalidation, guarded by {@link #entries}. */
+    private long generation;
+
+    /**
+     * Create a new cache
+     * @param ttl The time to live of an entry in milliseconds
+     * @param maxSize The maximum number of cached resources
+     */
+    public ResourceProviderCache(final long ttl, final int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the current generation of the cache. The generation has to be
+     * fetched before loading a result from the provider and passed to
+     * the put methods.
+     * @return The generation
+     */
+    public long getGeneration() {
+        synchronized ( this.entries ) {
+            return this.generation;
+        }
+    }
+
+    /**
+     * Get a cached resource
+     * @param user The user id
+     * @param path The path
+     * @return The cache entry or {@code null} if nothing is cached
+     */
+    public @Nullable CacheEntry getResource(@NotNull final String user, @NotNull final String path) {
+        return get(new CacheKey(user, path, false));
+    }
+
+    /**
+     * Cache a resource
+     * @param user The user id
+     * @param path The path
+     * @param resource The resource or {@code null} if there is no resource at the path
+     * @param generation The generation of the cache before the resource has been loaded
+     */
+    public void putResource(@NotNull final String user,
+            @NotNull final String path,
+            @Nullable final Resource resource,
+            final long generation) {
+        put(new CacheKey(user, path, false), resource == null ? null : new ResourceData(resource), 1, generation);
+    }
+
+    /**
+     * Get the cached children
+     * @param user The user id
+     * @param path The path of the parent
+     * @return The cache entry or {@code null} if nothing is cached
+     */
+    public @Nullable CacheEntry getChildren(@NotNull final String user, @NotNull final String path) {
+        return get(new CacheKey(user, path, true));
+    }
+
+    /**
+     * Iterate over the children of a resource and cache them once the
+     * iteration has been completed. The children are read lazily from
+     * the passed iterator; if there are more than {@link #MAX_CACHED_CHILDREN}
+     * children or the iteration is not completed, nothing is cached.
+     * @param user The user id
+     * @param path The path of the parent
+     * @param children The children or {@code null} if the provider did not return an iterator
+     * @param generation The generation of the cache before the children have been loaded
+     * @return The iterator to use instead of the passed one
+     */
+    public @Nullable Iterator<Resource> putChildren(@NotNull final String user,
+            @NotNull final String path,
+            @Nullable final Iterator<Resource> children,
+            final long generation) {
+        final CacheKey key = new CacheKey(user, path, true);
+        if ( children == null ) {
+            put(key, null, 1, generation);
+            return null;
+        }
+        return new Iterator<Resource>() {
+
+            private List<ResourceData> data = new ArrayList<>();
+
+            @Override
+            public boolean hasNext() {
+                final boolean hasNext = children.hasNext();
+                if ( !hasNext && this.data != null ) {
+                    put(key, Collections.unmodifiableList(this.data), 1 + this.data.size(), generation);
+                    this.data = null;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Resource next() {
+                final Resource child = children.next();
+                if ( this.data != null ) {
+                    if ( this.data.size() < MAX_CACHED_CHILDREN ) {
+                        this.data.add(new ResourceData(child));
+                    } else {
+                        this.data = null;
+                    }
+                }
+                return child;
+            }
+        };
+    }
+
+    private CacheEntry get(final CacheKey key) {
+        synchronized ( this.entries ) {
+            final CacheEntry entry = this.entries.get(key);
+            if ( entry != null && entry.expires < System.currentTimeMillis() ) {
+                this.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(final CacheKey key, final Object value, final int entryWeight, final long loadedGeneration) {
+        final CacheEntry entry = new CacheEntry(value, entryWeight, System.currentTimeMillis() + this.ttl);
+        synchronized ( this.entries ) {
+            if ( loadedGeneration != this.generation || entryWeight > this.maxSize ) {
+                return;
+            }
+            this.remove(key);
+            this.entries.put(key, entry);
+            this.keysByPath.computeIfAbsent(key.path, p -> new HashSet<>()).add(key);
+            this.weight += entryWeight;
+            final Iterator<Map.Entry<CacheKey, CacheEntry>> iter = this.entries.entrySet().iterator();
+            while ( this.weight > this.maxSize && iter.hasNext() ) {
+                final Map.Entry<CacheKey, CacheEntry> eldest = iter.next();
+                iter.remove();
+                this.weight -= eldest.getValue().weight;
+                this.removeFromIndex(eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Remove an entry, the caller holds the lock
+     * @param key The key
+     */
+    private void remove(final CacheKey key) {
+        final CacheEntry old = this.entries.remove(key);
+        if ( old != null ) {
+            this.weight -= old.weight;
+            this.removeFromIndex(key);
+        }
+    }
+
+    private void removeFromIndex(final CacheKey key) {
+        final Set<CacheKey> keys = this.keysByPath.get(key.path);
+        if ( keys != null ) {
+            keys.remove(key);
+            if ( keys.isEmpty() ) {
+                this.keysByPath.remove(key.path);
+            }
+        }
+    }
+
+    /**
+     * Remove all entries at a path, the caller holds the lock
+     * @param path The path
+     * @param childrenOnly Whether only cached children are removed
+     */
+    private void removePath(final String path, final boolean childrenOnly) {
+        final Set<CacheKey> keys = this.keysByPath.get(path);
+        if ( keys != null ) {
+            for(final CacheKey key : new ArrayList<>(keys)) {
+                if ( !childrenOnly || key.children ) {
+                    this.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries affected by the changes. A change invalidates
+     * the resource at its path and below, and the children of its parent.
+     * @param changes The changes
+     */
+    public void invalidate(@NotNull final Iterable<ResourceChange> changes) {
+        final List<String> paths = new ArrayList<>();
+        for(final ResourceChange c : changes) {
+            if ( paths.size() == MAX_SELECTIVE_INVALIDATIONS || "/".equals(c.getPath()) ) {
+                clear();
+                return;
+            }
+            paths.add(c.getPath());
+        }
+        if ( paths.isEmpty() ) {
+            return;
+        }
+        synchronized ( this.entries ) {
+            this.generation++;
+            for(final String path : paths) {
+                this.removePath(path, false);
+                final NavigableMap<String, Set<CacheKey>> below = this.keysByPath.subMap(path + '/', true, path + '0', false);
+                for(final String p : new ArrayList<>(below.keySet())) {
+                    this.removePath(p, false);
+                }
+                final String parent = ResourceUtil.getParent(path);
+                if ( parent != null ) {
+                    this.removePath(parent, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        synchronized ( this.entries ) {
+            this.generation++;
+            this.entries.clear();
+            this.keysByPath.clear();
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * Number of cached entries
+     * @return The number of entries
+     */
+    public int size() {
+        synchronized ( this.entries ) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * Create an observation reporter which invalidates this cache for all
+     * changes reported by the provider before passing them on.
+     * Unless one of the observer configurations already covers all changes
+     * of the provider, an additional observer configuration for the whole
+     * provider is added so that the provider reports all changes. Changes
+     * reported for that configuration are only used for invalidation.
+     * @param reporter The reporter to delegate to
+     * @param providerPath The mount point of the provider
+     * @param excludes The excluded paths of the provider
+     * @return The reporter
+     */
+    public @NotNull ObservationReporter wrap(@NotNull final ObservationReporter reporter,
+            @NotNull final Path providerPath,
+            @NotNull final PathSet excludes) {
+        final List<ObserverConfiguration> configs = new ArrayList<>(reporter.getObserverConfigurations());
+        ObserverConfiguration cacheConfig = null;
+        if ( !coversProvider(configs, providerPath, excludes) ) {
+            cacheConfig = new BasicObserverConfiguration(PathSet.fromPaths(providerPath),
+                    EnumSet.of(ChangeType.ADDED, ChangeType.CHANGED, ChangeType.REMOVED),
+                    true,
+                    excludes,
+                    null);
+            configs.add(cacheConfig);
+        }
+        final ObserverConfiguration invalidationConfig = cacheConfig;
+        final List<ObserverConfiguration> unmodifiableConfigs = Collections.unmodifiableList(configs);
+        return new ObservationReporter() {
+
+            @Override
+            public List<ObserverConfiguration> getObserverConfigurations() {
+                return unmodifiableConfigs;
+            }
+
+            @Override
+            public void reportChanges(final Iterable<ResourceChange> changes, final boolean distribute) {
+                invalidate(changes);
+                reporter.reportChanges(changes, distribute);
+            }
+
+            @Override
+            public void reportChanges(final ObserverConfiguration config, final Iterable<ResourceChange> changes, final boolean distribute) {
+                invalidate(changes);
+                if ( invalidationConfig == null || config != invalidationConfig ) {
+                    reporter.reportChanges(config, changes, distribute);
+                }
+            }
+        };
+    }
+
+    /**
+     * Check whether one of the configurations gets all changes of the provider
+     * @param configs The configurations
+     * @param providerPath The mount point of the provider
+     * @param excludes The excluded paths of the provider
+     * @return {@code true} if all changes are covered
+     */
+    private static boolean coversProvider(final List<ObserverConfiguration> configs,
+            final Path providerPath,
+            final PathSet excludes) {
+        for(final ObserverConfiguration config : configs) {
+            if ( config.includeExternal()
+                    && config.getPropertyNamesHint() == null
+                    && config.getChangeTypes().containsAll(EnumSet.of(ChangeType.ADDED, ChangeType.CHANGED, ChangeType.REMOVED))
+                    && config.getPaths().matches(providerPath.getPath()) != null ) {
+                boolean excluded = false;
+                for(final Path p : config.getExcludedPaths()) {
+                    if ( excludes.matches(p.getPath()) == null ) {
+                        excluded = true;
+                        break;
+                    }
+                }
+                if ( !excluded ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cached result
+     */
+    public static final class CacheEntry {
+
+        private final Object value;
+
+        private final int weight;
+
+        private final long expires;
+
+        CacheEntry(final Object value, final int weight, final long expires) {
+            this.value = value;
+            this.weight = weight;
+            this.expires = expires;
+        }
+
+        /**
+         * Create the cached resource for a resolver
+         * @param resolver The resolver
+         * @return The resource or {@code null} if the provider had no resource
+         */
+        public @Nullable Resource getResource(@NotNull final ResourceResolver resolver) {
+            return value == null ? null : new CachedResource((ResourceData) value, resolver);
+        }
+
+        /**
+         * Create the cached children for a resolver
+         * @param resolver The resolver
+         * @return The children or {@code null} if the provider did not return an iterator
+         */
+        @SuppressWarnings("unchecked")
+        public @Nullable Iterator<Resource> getChildren(@NotNull final ResourceResolver resolver) {
+            if ( value == null ) {
+                return null;
+            }
+            final Iterator<ResourceData> iter = ((List<ResourceData>) value).iterator();
+            return new Iterator<Resource>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Resource next() {
+                    if ( !iter.hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    return new CachedResource(iter.next(), resolver);
+                }
+            };
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final String user;
+
+        private final String path;
+
+        private final boolean children;
+
+        CacheKey(final String user, final String path, final boolean children) {
+            this.user = user;
+            this.path = path;
+            this.children = children;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, path, children);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if ( this == obj ) {
+                return true;
+            }
+            if ( !(obj instanceof CacheKey) ) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return this.children == other.children
+                && this.path.equals(other.path)
+                && this.user.equals(other.user);
+        }
+    }
+
+    /**
+     * The data of a resource returned by the provider
+     */
+    private static final class ResourceData {
+
+        private final String path;
+
+        private final String resourceType;
+
+        private final String resourceSuperType;
+
+        private final Map<String, Object> metadata;
+
+        private final Map<String, Object> properties;
+
+        ResourceData(final Resource resource) {
+            this.path = resource.getPath();
+            this.resourceType = resource.getResourceType();
+            this.resourceSuperType = resource.getResourceSuperType();
+            this.metadata = new HashMap<>(resource.getResourceMetadata());
+            final ValueMap props = resource.getValueMap();
+            this.properties = props == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(props));
+        }
+    }
+
+    /**
+     * Resource handed out from the cache. It is bound to the resolver
+     * requesting it and gets its own copy of the metadata, as the metadata
+     * of a returned resource is modified and locked by the resolver.
+     */
+    private static final class CachedResource extends AbstractResource {
+
+        private final ResourceData data;
+
+        private final ResourceResolver resolver;
+
+        private final ResourceMetadata metadata;
+
+        CachedResource(final ResourceData data, final ResourceResolver resolver) {
+            this.data = data;
+            this.resolver = resolver;
+            this.metadata = new ResourceMetadata();
+            this.metadata.putAll(data.metadata);
+        }
+
+        @Override
+        public String getPath() {
+            return this.data.path;
+        }
+
+        @Override
+        public String getResourceType() {
+            return this.data.resourceType;
+        }
+
+        @Override
+        public String getResourceSuperType() {
+            return this.data.resourceSuperType;
+        }
+
+        @Override
+        public ResourceResolver getResourceResolver() {
+            return this.resolver;
+        }
+
+        @Override
+        public ResourceMetadata getResourceMetadata() {
+            return this.metadata;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <AdapterType> AdapterType adaptTo(final Class<AdapterType> type) {
+            if ( type == ValueMap.class ) {
+                return (AdapterType) new ValueMapDecorator(this.data.properties);
+            } else if ( type == Map.class ) {
+                return (AdapterType) this.data.properties;
+            }
+            return super.adaptTo(type);
+        }
+    }
+}
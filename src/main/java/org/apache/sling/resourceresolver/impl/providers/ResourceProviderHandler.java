@@ -43,6 +43,9 @@ public class ResourceProviderHandler implements Comparable<ResourceProviderHandl
     /** Flag to indicate whether the service has been used. */
     private volatile boolean isUsed = false;
 
+    /** The read-through cache, only available if enabled for the provider. */
+    private volatile ResourceProviderCache cache;
+
     /**
      * Create a new handler
      * @param bc   Bundle context to get the service.
@@ -51,6 +54,9 @@ public class ResourceProviderHandler implements Comparable<ResourceProviderHandl
     public ResourceProviderHandler(final BundleContext bc, final ResourceProviderInfo info) {
         this.info = info;
         this.bundleContext = bc;
+        if ( info.getCacheTtl() > 0 ) {
+            this.cache = new ResourceProviderCache(info.getCacheTtl(), info.getCacheSize());
+        }
     }
 
     /**
@@ -86,6 +92,9 @@ public class ResourceProviderHandler implements Comparable<ResourceProviderHandl
         if ( this.provider != null ) {
             this.provider.stop();
             this.provider = null;
+            if ( this.cache != null ) {
+                this.cache.clear();
+            }
             this.context.update(null, null);
             this.bundleContext.ungetService(this.info.getServiceReference());
         }
@@ -99,6 +108,7 @@ public class ResourceProviderHandler implements Comparable<ResourceProviderHandl
         this.bundleContext = null;
         this.context = null;
         this.isUsed = false;
+        this.cache = null;
     }
 
     /**
@@ -118,6 +128,14 @@ public class ResourceProviderHandler implements Comparable<ResourceProviderHandl
         return this.provider;
     }
 
+    /**
+     * Get the read-through cache of the provider.
+     * @return The cache or {@code null} if caching is not enabled for the provider.
+     */
+    public ResourceProviderCache getCache() {
+        return this.cache;
+    }
+
     /**
      * Check whether this provider has been used.
      * @return {@code true} if used
@@ -35,6 +35,22 @@ public class ResourceProviderInfo implements Comparable<ResourceProviderInfo> {
         PASSTHROUGH
     }
 
+    /**
+     * Service property enabling the read-through cache for the provider,
+     * the time to live of a cache entry in milliseconds.
+     * @see ResourceProviderCache
+     */
+    public static final String PROPERTY_CACHE_TTL = "sling.resource.provider.cache.ttl";
+
+    /**
+     * Service property for the maximum number of cached resources of the provider,
+     * a cached list of children counts with each of its children.
+     * @see ResourceProviderCache
+     */
+    public static final String PROPERTY_CACHE_SIZE = "sling.resource.provider.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
     private static final Logger logger = LoggerFactory.getLogger(ResourceProviderInfo.class);
 
     @SuppressWarnings("rawtypes")
@@ -58,6 +74,10 @@ public class ResourceProviderInfo implements Comparable<ResourceProviderInfo> {
 
     private final Mode mode;
 
+    private final long cacheTtl;
+
+    private final int cacheSize;
+
     @SuppressWarnings("rawtypes")
     public ResourceProviderInfo(final ServiceReference<ResourceProvider> ref) {
         this.ref = ref;
@@ -84,6 +104,8 @@ public class ResourceProviderInfo implements Comparable<ResourceProviderInfo> {
             logger.error("Illegal mode {} for resource provider {}", modeValue, name);
         }
         this.mode = mode;
+        this.cacheTtl = PropertiesUtil.toLong(ref.getProperty(PROPERTY_CACHE_TTL), 0);
+        this.cacheSize = PropertiesUtil.toInteger(ref.getProperty(PROPERTY_CACHE_SIZE), DEFAULT_CACHE_SIZE);
     }
 
     public boolean isValid() {
@@ -158,4 +180,20 @@ public class ResourceProviderInfo implements Comparable<ResourceProviderInfo> {
     public boolean getUseResourceAccessSecurity() {
         return this.useResourceAccessSecurity;
     }
+
+    /**
+     * The time to live of cache entries, a value of 0 or less disables the cache.
+     * @return The time to live in milliseconds
+     */
+    public long getCacheTtl() {
+        return this.cacheTtl;
+    }
+
+    /**
+     * The maximum number of cached resources
+     * @return The cache size
+     */
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
 }
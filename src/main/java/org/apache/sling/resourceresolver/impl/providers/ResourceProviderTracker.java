@@ -18,8 +18,10 @@
  */
 package org.apache.sling.resourceresolver.impl.providers;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -29,8 +31,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.api.resource.path.Path;
@@ -42,6 +49,9 @@ import org.apache.sling.api.resource.runtime.dto.ResourceProviderFailureDTO;
 import org.apache.sling.api.resource.runtime.dto.RuntimeDTO;
 import org.apache.sling.resourceresolver.impl.legacy.LegacyResourceProviderWhiteboard;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderInfo.Mode;
+import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.resourceresolver.impl.providers.tree.PathTree;
+import org.apache.sling.resourceresolver.impl.providers.tree.Pathable;
 import org.apache.sling.spi.resource.provider.ObservationReporter;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.osgi.framework.BundleContext;
@@ -85,6 +95,15 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
 
     private final Map<String, List<ResourceProviderHandler>> handlers = new HashMap<>();
 
+    /** The paths of the {@link #handlers} as a tree, guarded by {@link #handlers}. */
+    private PathTree<MountPath> mounts = new PathTree<>(Collections.<MountPath>emptyList());
+
+    /**
+     * The providers added while the tracker is opened, guarded by {@link #handlers}.
+     * These are registered together once the tracker is open.
+     */
+    private List<ResourceProviderInfo> bulkRegistrations;
+
     private final Map<ResourceProviderInfo, FailureReason> invalidProviders = new ConcurrentHashMap<>();
 
     private volatile EventAdmin eventAdmin;
@@ -97,11 +116,27 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
 
     private volatile ChangeListener listener;
 
+    /** Provider events not posted yet, in the order of the changes. */
+    private final Deque<ProviderEvent> pendingEvents = new ArrayDeque<>();
+
+    /** Whether posting the pending events is scheduled, guarded by {@link #pendingEvents}. */
+    private boolean eventsScheduled;
+
+    /** Single thread posting the provider events. */
+    private volatile ThreadPoolExecutor eventExecutor;
+
     @SuppressWarnings("rawtypes")
     public void activate(final BundleContext bundleContext, final EventAdmin eventAdmin, final ChangeListener listener) {
         this.bundleContext = bundleContext;
         this.eventAdmin = eventAdmin;
         this.listener = listener;
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread t = new Thread(r, "Apache Sling Resource Provider Change Notifier");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.eventExecutor = executor;
         this.tracker = new ServiceTracker<>(bundleContext,
                 ResourceProvider.class,
                 new ServiceTrackerCustomizer<ResourceProvider, ServiceReference<ResourceProvider>>() {
@@ -128,11 +163,26 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
             public ServiceReference<ResourceProvider> addingService(final ServiceReference<ResourceProvider> reference) {
                 final ResourceProviderInfo info = new ResourceProviderInfo(reference);
                 infos.put(reference, info);
+                synchronized ( handlers ) {
+                    if ( bulkRegistrations != null ) {
+                        bulkRegistrations.add(info);
+                        return reference;
+                    }
+                }
                 register(info);
                 return reference;
             }
         });
+        synchronized ( this.handlers ) {
+            this.bulkRegistrations = new ArrayList<>();
+        }
         this.tracker.open();
+        final List<ResourceProviderInfo> registrations;
+        synchronized ( this.handlers ) {
+            registrations = this.bulkRegistrations;
+            this.bulkRegistrations = null;
+        }
+        this.registerAll(registrations);
     }
 
     public void deactivate() {
@@ -143,25 +193,40 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
             this.tracker.close();
             this.tracker = null;
         }
+        if ( this.eventExecutor != null ) {
+            this.eventExecutor.shutdownNow();
+            this.eventExecutor = null;
+        }
+        synchronized ( this.pendingEvents ) {
+            this.pendingEvents.clear();
+            this.eventsScheduled = false;
+        }
         this.infos.clear();
-        this.handlers.clear();
+        synchronized ( this.handlers ) {
+            this.handlers.clear();
+            this.mounts = new PathTree<>(Collections.<MountPath>emptyList());
+        }
         this.invalidProviders.clear();
     }
 
     public void setObservationReporterGenerator(final ObservationReporterGenerator generator) {
         this.providerReporter = generator.createProviderReporter();
+        final List<ResourceProviderHandler> updated = new ArrayList<>();
         synchronized ( this.handlers ) {
             this.reporterGenerator = generator;
             for (List<ResourceProviderHandler> list : handlers.values()) {
                 if ( !list.isEmpty() ) {
                     final ResourceProviderHandler h = list.get(0);
-                    if (h != null) {
-                        updateProviderContext(h);
-                        h.update();
+                    if (h != null && updateProviderContext(h)) {
+                        updated.add(h);
                     }
                 }
             }
         }
+        // notify the providers outside of the lock
+        for (final ResourceProviderHandler h : updated) {
+            h.update();
+        }
     }
 
     /**
@@ -177,7 +242,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
 
            ResourceProviderHandler activate = null;
            synchronized ( this.handlers ) {
-               final List<ResourceProviderHandler> matchingHandlers = this.handlers.computeIfAbsent(info.getPath(), key -> new ArrayList<>());
+               final List<ResourceProviderHandler> matchingHandlers = this.getOrCreateHandlers(info.getPath());
                final ResourceProviderHandler handler = new ResourceProviderHandler(bundleContext, info);
                matchingHandlers.add(handler);
                Collections.sort(matchingHandlers);
@@ -202,7 +267,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                        if ( matchingHandlers != null && !matchingHandlers.isEmpty() && matchingHandlers.remove(activate) ) {
                            storage = null;
                            if ( matchingHandlers.isEmpty() ) {
-                               this.handlers.remove(info.getPath());
+                               this.removeHandlers(info.getPath());
                            }
                        }
                    }
@@ -231,6 +296,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                }
                events.add(new ProviderEvent(false, handlerInfo));
            }
+           this.updateParentProviders(info.getPath());
            this.postEvents(events);
         } else {
             logger.warn("Ignoring invalid resource provider {}", info);
@@ -238,6 +304,88 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
         }
     }
 
+    /**
+     * Register the resource providers which are available when the tracker is
+     * opened. The handlers are added and their provider contexts are updated
+     * in a single pass, the storage is rebuilt and the change listener is
+     * informed only once for all providers.
+     * @param registrations The resource provider infos.
+     */
+    private void registerAll(final List<ResourceProviderInfo> registrations) {
+        if ( registrations.isEmpty() ) {
+            return;
+        }
+        logger.debug("Registering {} resource providers", registrations.size());
+        final List<ResourceProviderHandler> candidates = new ArrayList<>();
+        synchronized ( this.handlers ) {
+            final Set<String> paths = new HashSet<>();
+            for(final ResourceProviderInfo info : registrations) {
+                // the provider might have been removed in the meantime
+                if ( this.infos.get(info.getServiceReference()) != info ) {
+                    continue;
+                }
+                if ( !info.isValid() ) {
+                    logger.warn("Ignoring invalid resource provider {}", info);
+                    this.invalidProviders.put(info, FailureReason.invalid);
+                    continue;
+                }
+                this.getOrCreateHandlers(info.getPath()).add(new ResourceProviderHandler(bundleContext, info));
+                paths.add(info.getPath());
+            }
+            for(final String path : paths) {
+                final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(path);
+                Collections.sort(matchingHandlers);
+                final ResourceProviderHandler first = matchingHandlers.get(0);
+                if ( first.getResourceProvider() == null ) {
+                    candidates.add(first);
+                }
+            }
+            for(final ResourceProviderHandler candidate : candidates) {
+                updateProviderContext(candidate);
+            }
+        }
+
+        final List<ProviderEvent> events = new ArrayList<>();
+        for(final ResourceProviderHandler candidate : candidates) {
+            final String path = candidate.getPath();
+            ResourceProviderHandler handler = candidate;
+            boolean activated = this.start(handler);
+            while ( !activated ) {
+                // try the next provider for the path
+                final ResourceProviderHandler failed = handler;
+                handler = null;
+                synchronized ( this.handlers ) {
+                    final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(path);
+                    if ( matchingHandlers != null && !matchingHandlers.isEmpty() && matchingHandlers.get(0) == failed ) {
+                        matchingHandlers.remove(0);
+                        if ( matchingHandlers.isEmpty() ) {
+                            this.removeHandlers(path);
+                        } else {
+                            handler = matchingHandlers.get(0);
+                        }
+                    }
+                }
+                failed.dispose();
+                if ( handler == null ) {
+                    break;
+                }
+                activated = this.activate(handler);
+            }
+            if ( activated ) {
+                events.add(new ProviderEvent(true, handler.getInfo()));
+            }
+        }
+        synchronized ( this.handlers ) {
+            storage = null;
+        }
+
+        final ChangeListener cl = this.listener;
+        if ( !events.isEmpty() && cl != null ) {
+            cl.providerAdded();
+        }
+        this.postEvents(events);
+    }
+
     /**
      * Unregister a resource provider.
      * @param info The resource provider info.
@@ -254,6 +402,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
             // remove provider from handlers and if the provider is active (first handler)
             // keep the reference for deactivation
             ResourceProviderHandler deactivateHandler = null;
+            ResourceProviderHandler shadowedHandler = null;
             synchronized (this.handlers) {
                 final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(info.getPath());
                 if ( matchingHandlers != null ) {
@@ -266,10 +415,10 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                             if ( first ) {
                                 deactivateHandler = h;
                             } else {
-                                h.dispose();
+                                shadowedHandler = h;
                             }
                             if (matchingHandlers.isEmpty()) {
-                                this.handlers.remove(info.getPath());
+                                this.removeHandlers(info.getPath());
                             }
                             storage = null;
 
@@ -279,6 +428,9 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                     }
                 }
             }
+            if ( shadowedHandler != null ) {
+                shadowedHandler.dispose();
+            }
 
             if ( deactivateHandler != null ) {
                 final List<ProviderEvent> events = new ArrayList<>();
@@ -297,7 +449,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                     final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(info.getPath());
                     if ( matchingHandlers != null ) {
                         if ( matchingHandlers.isEmpty() ) {
-                            this.handlers.remove(info.getPath());
+                            this.removeHandlers(info.getPath());
                         } else {
                             addingProvider = matchingHandlers.get(0);
                         }
@@ -313,15 +465,17 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                             this.storage = null;
                         }
                     } else {
+                        final ResourceProviderHandler failedProvider = addingProvider;
+                        boolean removed = false;
                         synchronized ( this.handlers ) {
                             final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(info.getPath());
                             if ( matchingHandlers != null && !matchingHandlers.isEmpty() ) {
-                                if ( matchingHandlers.get(0) == addingProvider ) {
+                                if ( matchingHandlers.get(0) == failedProvider ) {
                                     this.storage = null;
                                     matchingHandlers.remove(0);
-                                    addingProvider.dispose();
+                                    removed = true;
                                     if ( matchingHandlers.isEmpty() ) {
-                                        this.handlers.remove(info.getPath());
+                                        this.removeHandlers(info.getPath());
                                         addingProvider = null;
                                     } else {
                                         addingProvider = matchingHandlers.get(0);
@@ -329,6 +483,9 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                                 }
                             }
                         }
+                        if ( removed ) {
+                            failedProvider.dispose();
+                        }
                     }
                 }
 
@@ -338,6 +495,7 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
                     }
                 }
                 events.add(new ProviderEvent(false,info));
+                this.updateParentProviders(info.getPath());
                 this.postEvents(events);
 
             }
@@ -354,6 +512,14 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
         synchronized (this.handlers) {
             updateProviderContext(handler);
         }
+        return this.start(handler);
+    }
+
+    /**
+     * Start a resource provider with an up to date provider context
+     * @param handler The provider handler
+     */
+    private boolean start(final ResourceProviderHandler handler) {
         if ( !handler.activate() ) {
             logger.warn("Activating resource provider {} failed", handler.getInfo());
             this.invalidProviders.put(handler.getInfo(), FailureReason.service_not_gettable);
@@ -391,16 +557,18 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
     }
 
     /**
-     * Post a change event for a resource provider change
-     * @param type The change type
-     * @param info The resource provider
+     * Post the change events for resource provider changes
+     * @param events The provider events
      */
-    private void postResourceProviderChange(final ProviderEvent event) {
+    private void postResourceProviderChanges(final List<ProviderEvent> events) {
         final ObservationReporter or = this.providerReporter;
         if ( or != null ) {
-            final ResourceChange change = new ResourceChange(event.isAdd ? ChangeType.PROVIDER_ADDED : ChangeType.PROVIDER_REMOVED,
-                    event.path, false);
-            or.reportChanges(Collections.singletonList(change), false);
+            final List<ResourceChange> changes = new ArrayList<>(events.size());
+            for(final ProviderEvent event : events) {
+                changes.add(new ResourceChange(event.isAdd ? ChangeType.PROVIDER_ADDED : ChangeType.PROVIDER_REMOVED,
+                        event.path, false));
+            }
+            or.reportChanges(changes, false);
         }
     }
 
@@ -482,25 +650,117 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
         }
     }
 
-    private void updateProviderContext(final ResourceProviderHandler handler) {
+    /**
+     * Update the provider context of the handler
+     * @param handler The handler
+     * @return {@code true} if the context changed
+     */
+    private boolean updateProviderContext(final ResourceProviderHandler handler) {
         final Set<String> excludedPaths = new HashSet<>();
         final Path handlerPath = new Path(handler.getPath());
 
-        for(final Map.Entry<String, List<ResourceProviderHandler>> entry : handlers.entrySet()) {
-            if ( entry.getValue().get(0).getInfo().getMode() == Mode.PASSTHROUGH ) {
-                continue;
+        final Node<MountPath> node = this.mounts.getNode(handler.getPath());
+        if ( node != null ) {
+            collectExcludedPaths(node, excludedPaths);
+        }
+
+        final PathSet excludedPathSet = PathSet.fromStringCollection(excludedPaths);
+        final ObservationReporter generated = reporterGenerator.create(handlerPath, excludedPathSet);
+        if ( handler.getProviderContext().isUpToDate(generated, excludedPathSet) ) {
+            return false;
+        }
+        ObservationReporter reporter = generated;
+        final ResourceProviderCache cache = handler.getCache();
+        if ( cache != null ) {
+            reporter = cache.wrap(reporter, handlerPath, excludedPathSet);
+        }
+        handler.getProviderContext().update(reporter, excludedPathSet, generated);
+        return true;
+    }
+
+    /**
+     * Collect the paths of the first providers below a node which are not in
+     * passthrough mode. Providers below these are excluded by them as well.
+     * @param node The node
+     * @param excludedPaths The set of excluded paths
+     */
+    private void collectExcludedPaths(final Node<MountPath> node, final Set<String> excludedPaths) {
+        for(final Node<MountPath> child : node.getChildren().values()) {
+            final MountPath mount = child.getValue();
+            if ( mount != null ) {
+                final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(mount.path);
+                if ( matchingHandlers != null && !matchingHandlers.isEmpty()
+                        && matchingHandlers.get(0).getInfo().getMode() != Mode.PASSTHROUGH ) {
+                    excludedPaths.add(mount.path);
+                    continue;
+                }
             }
-            if ( !handler.getPath().equals(entry.getKey()) && handlerPath.matches(entry.getKey()) ) {
-                excludedPaths.add(entry.getKey());
+            collectExcludedPaths(child, excludedPaths);
+        }
+    }
+
+    /**
+     * Update the provider contexts of the active providers above a path after
+     * the providers for the path changed. The first provider above which is
+     * not in passthrough mode excludes the path and stops the update.
+     * @param path The changed path
+     */
+    private void updateParentProviders(final String path) {
+        final List<ResourceProviderHandler> updated = new ArrayList<>();
+        synchronized ( this.handlers ) {
+            if ( this.reporterGenerator == null ) {
+                return;
+            }
+            String parentPath = ResourceUtil.getParent(path);
+            while ( parentPath != null ) {
+                final List<ResourceProviderHandler> matchingHandlers = this.handlers.get(parentPath);
+                if ( matchingHandlers != null && !matchingHandlers.isEmpty() ) {
+                    final ResourceProviderHandler h = matchingHandlers.get(0);
+                    if ( h.getResourceProvider() != null && updateProviderContext(h) ) {
+                        updated.add(h);
+                    }
+                    if ( h.getInfo().getMode() != Mode.PASSTHROUGH ) {
+                        break;
+                    }
+                }
+                parentPath = ResourceUtil.getParent(parentPath);
             }
         }
+        // notify the providers outside of the lock
+        for (final ResourceProviderHandler h : updated) {
+            h.update();
+        }
+    }
 
-        final PathSet excludedPathSet = PathSet.fromStringCollection(excludedPaths);
-        handler.getProviderContext().update(
-                reporterGenerator.create(handlerPath, excludedPathSet),
-                excludedPathSet);
+    /**
+     * Get the handlers for a path, adding the path to the mounts if needed.
+     * Must be called while holding the lock on {@link #handlers}.
+     * @param path The path
+     * @return The modifiable list of handlers
+     */
+    private List<ResourceProviderHandler> getOrCreateHandlers(final String path) {
+        return this.handlers.computeIfAbsent(path, key -> {
+            this.mounts.add(new MountPath(key));
+            return new ArrayList<>();
+        });
     }
 
+    /**
+     * Remove the handlers for a path and the path from the mounts.
+     * Must be called while holding the lock on {@link #handlers}.
+     * @param path The path
+     */
+    private void removeHandlers(final String path) {
+        this.handlers.remove(path);
+        this.mounts.remove(path);
+    }
+
+    /**
+     * Queue the events for posting. The events are posted by a single thread
+     * in the order they are queued. All events queued while the thread is
+     * busy are posted together, reporting their resource changes as one list.
+     * @param events The provider events
+     */
     private void postEvents(final List<ProviderEvent> events) {
         if ( events.isEmpty() ) {
             return;
@@ -508,20 +768,69 @@ public class ResourceProviderTracker implements ResourceProviderStorageProvider
         if ( this.listener == null && this.providerReporter == null ) {
             return;
         }
-        final Thread t = new Thread(new Runnable() {
+        final ThreadPoolExecutor executor = this.eventExecutor;
+        if ( executor == null ) {
+            return;
+        }
+        final boolean schedule;
+        synchronized ( this.pendingEvents ) {
+            this.pendingEvents.addAll(events);
+            schedule = !this.eventsScheduled;
+            this.eventsScheduled = true;
+        }
+        if ( schedule ) {
+            try {
+                executor.execute(this::postPendingEvents);
+            } catch ( final RejectedExecutionException ree ) {
+                // tracker is deactivated
+                synchronized ( this.pendingEvents ) {
+                    this.pendingEvents.clear();
+                    this.eventsScheduled = false;
+                }
+            }
+        }
+    }
 
-            @Override
-            public void run() {
+    /**
+     * Post all pending events until there are no more events.
+     */
+    private void postPendingEvents() {
+        while ( true ) {
+            final List<ProviderEvent> events;
+            synchronized ( this.pendingEvents ) {
+                if ( this.pendingEvents.isEmpty() ) {
+                    this.eventsScheduled = false;
+                    return;
+                }
+                events = new ArrayList<>(this.pendingEvents);
+                this.pendingEvents.clear();
+            }
+            try {
                 for(final ProviderEvent e : events) {
                     postOSGiEvent(e);
-                    postResourceProviderChange(e);
                 }
+                postResourceProviderChanges(events);
+            } catch ( final Throwable t ) {
+                logger.warn("Unable to post resource provider change events", t);
             }
-        });
-        t.setName("Apache Sling Resource Provider Change Notifier");
-        t.setDaemon(true);
+        }
+    }
 
-        t.start();
+    /**
+     * A path with resource providers
+     */
+    private static final class MountPath implements Pathable {
+
+        final String path;
+
+        MountPath(final String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return this.path;
+        }
     }
 
     private static final class ProviderEvent {
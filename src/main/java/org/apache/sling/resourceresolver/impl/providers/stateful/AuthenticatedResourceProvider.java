@@ -21,6 +21,7 @@ package org.apache.sling.resourceresolver.impl.providers.stateful;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import org.jetbrains.annotations.Nullable;
@@ -33,7 +34,9 @@ import org.apache.sling.api.security.AccessSecurityException;
 import org.apache.sling.api.security.ResourceAccessSecurity;
 import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
 import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.resourceresolver.impl.helper.AbstractIterator;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderCache;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
 import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
@@ -52,7 +55,7 @@ public class AuthenticatedResourceProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(ResourceResolverImpl.class);
 
-    public static final AuthenticatedResourceProvider UNAUTHENTICATED_PROVIDER = new AuthenticatedResourceProvider(null, false, null, null);
+    public static final AuthenticatedResourceProvider UNAUTHENTICATED_PROVIDER = new AuthenticatedResourceProvider(null, false, null, null, Optional.empty());
 
     private final ResourceProviderHandler providerHandler;
 
@@ -62,6 +65,13 @@ public class AuthenticatedResourceProvider {
 
     private final boolean useRAS;
 
+    private final Optional<ResourceResolverMetrics> metrics;
+
+    /** The user id for the read-through cache, resolved on first use. */
+    private String cacheUser;
+
+    private boolean cacheUserResolved;
+
     /**
      * Constructor
      * @param providerHandler
@@ -73,10 +83,36 @@ public class AuthenticatedResourceProvider {
             final boolean useRAS,
             @NotNull final ResolveContext<Object> resolveContext,
             @NotNull final ResourceAccessSecurityTracker tracker) {
+        this(providerHandler, useRAS, resolveContext, tracker, Optional.empty());
+    }
+
+    /**
+     * Constructor
+     * @param providerHandler
+     * @param useRAS
+     * @param resolveContext
+     * @param tracker
+     * @param metrics
+     */
+    public AuthenticatedResourceProvider(@NotNull final ResourceProviderHandler providerHandler,
+            final boolean useRAS,
+            @NotNull final ResolveContext<Object> resolveContext,
+            @NotNull final ResourceAccessSecurityTracker tracker,
+            @NotNull final Optional<ResourceResolverMetrics> metrics) {
         this.providerHandler = providerHandler;
         this.resolveContext = resolveContext;
         this.tracker = tracker;
         this.useRAS = useRAS;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the name of the provider used for reporting.
+     * @return The name of the provider or its path if it has no name
+     */
+    public @NotNull String getName() {
+        final String name = this.providerHandler.getInfo().getName();
+        return name != null ? name : this.providerHandler.getInfo().getPath();
     }
 
     /**
@@ -119,7 +155,7 @@ public class AuthenticatedResourceProvider {
     public Resource getParent(final Resource child) {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            return wrapResource(rp.getParent(this.resolveContext, child));
+            return wrapResource(this.call(() -> rp.getParent(this.resolveContext, child)));
         }
         return null;
     }
@@ -132,6 +168,18 @@ public class AuthenticatedResourceProvider {
         if ( rp == null ) {
             return null;
         }
+        final ResourceProviderCache cache = this.providerHandler.getCache();
+        final String cacheUser = cache != null ? this.getCacheUser(rp) : null;
+        if ( cacheUser != null && (parameters == null || parameters.isEmpty()) ) {
+            final ResourceProviderCache.CacheEntry entry = cache.getResource(cacheUser, path);
+            if ( entry != null ) {
+                return wrapResource(entry.getResource(this.resolveContext.getResourceResolver()));
+            }
+            final long generation = cache.getGeneration();
+            final Resource rsrc = this.getResource(rp, path, ResourceContext.EMPTY_CONTEXT, parent);
+            cache.putResource(cacheUser, path, rsrc, generation);
+            return wrapResource(rsrc);
+        }
         final ResourceContext resourceContext;
         if ( parameters != null ) {
             resourceContext = new ResourceContext() {
@@ -144,7 +192,22 @@ public class AuthenticatedResourceProvider {
         } else {
             resourceContext = ResourceContext.EMPTY_CONTEXT;
         }
-        return wrapResource(rp.getResource(this.resolveContext, path, resourceContext, parent));
+        return wrapResource(this.getResource(rp, path, resourceContext, parent));
+    }
+
+    /**
+     * Get the resource from the provider
+     * @param rp The provider
+     * @param path The path
+     * @param resourceContext The resource context
+     * @param parent The parent or {@code null}
+     * @return The resource or {@code null}
+     */
+    private @Nullable Resource getResource(@NotNull final ResourceProvider<Object> rp,
+            @NotNull final String path,
+            @NotNull final ResourceContext resourceContext,
+            @Nullable final Resource parent) {
+        return this.call(() -> rp.getResource(this.resolveContext, path, resourceContext, parent));
     }
 
     /**
@@ -153,11 +216,51 @@ public class AuthenticatedResourceProvider {
     public Iterator<Resource> listChildren(final Resource parent) {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            return wrapIterator(rp.listChildren(this.resolveContext, parent));
+            final ResourceProviderCache cache = this.providerHandler.getCache();
+            final String cacheUser = cache != null ? this.getCacheUser(rp) : null;
+            if ( cacheUser != null ) {
+                final ResourceProviderCache.CacheEntry entry = cache.getChildren(cacheUser, parent.getPath());
+                if ( entry != null ) {
+                    return wrapIterator(entry.getChildren(this.resolveContext.getResourceResolver()));
+                }
+                final long generation = cache.getGeneration();
+                return wrapIterator(cache.putChildren(cacheUser, parent.getPath(), this.listChildren(rp, parent), generation));
+            }
+            return wrapIterator(this.listChildren(rp, parent));
         }
         return null;
     }
 
+    /**
+     * List the children from the provider
+     * @param rp The provider
+     * @param parent The parent
+     * @return The children or {@code null}
+     */
+    private @Nullable Iterator<Resource> listChildren(@NotNull final ResourceProvider<Object> rp,
+            @NotNull final Resource parent) {
+        return this.call(() -> rp.listChildren(this.resolveContext, parent));
+    }
+
+    /**
+     * Get the user the read-through cache of the provider is used for.
+     * Resolvers without a user id do not use the cache. Resolvers with
+     * changes not committed yet bypass the cache, so their own view is
+     * neither read from nor put into the cache.
+     * @param rp The provider
+     * @return The user id or {@code null}
+     */
+    private @Nullable String getCacheUser(@NotNull final ResourceProvider<Object> rp) {
+        if ( !this.cacheUserResolved ) {
+            this.cacheUser = this.resolveContext.getResourceResolver().getUserID();
+            this.cacheUserResolved = true;
+        }
+        if ( this.cacheUser != null && rp.hasChanges(this.resolveContext) ) {
+            return null;
+        }
+        return this.cacheUser;
+    }
+
     /**
      * @see ResourceProvider#getAttributeNames(ResolveContext)
      */
@@ -191,7 +294,7 @@ public class AuthenticatedResourceProvider {
     throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null && this.canCreate(resolver, path) ) {
-            return rp.create(this.resolveContext, path, properties);
+            return this.call(() -> rp.create(this.resolveContext, path, properties));
         }
         return null;
     }
@@ -203,7 +306,7 @@ public class AuthenticatedResourceProvider {
         throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if (rp != null && this.canOrderChildren(parent)) {
-            return rp.orderBefore(this.resolveContext, parent, name, followingSiblingName);
+            return this.call(() -> rp.orderBefore(this.resolveContext, parent, name, followingSiblingName));
         } else {
             throw new PersistenceException("Unable to order child resources of " + parent.getPath());
         }
@@ -215,7 +318,10 @@ public class AuthenticatedResourceProvider {
     public void delete(final Resource resource) throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null && this.canDelete(resource) ) {
-            rp.delete(this.resolveContext, resource);
+            this.call(() -> {
+                rp.delete(this.resolveContext, resource);
+                return null;
+            });
         } else {
             throw new PersistenceException("Unable to delete resource " + resource.getPath());
         }
@@ -227,7 +333,10 @@ public class AuthenticatedResourceProvider {
     public void revert() {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            rp.revert(this.resolveContext);
+            this.call(() -> {
+                rp.revert(this.resolveContext);
+                return null;
+            });
         }
     }
 
@@ -237,7 +346,10 @@ public class AuthenticatedResourceProvider {
     public void commit() throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            rp.commit(this.resolveContext);
+            this.call(() -> {
+                rp.commit(this.resolveContext);
+                return null;
+            });
         }
     }
 
@@ -282,7 +394,8 @@ public class AuthenticatedResourceProvider {
         if (jcrQueryProvider == null) {
             return null;
         }
-        return wrapIterator(jcrQueryProvider.findResources(this.resolveContext, transformQuery(query, language), language));
+        final String transformedQuery = transformQuery(query, language);
+        return wrapIterator(this.call(() -> jcrQueryProvider.findResources(this.resolveContext, transformedQuery, language)));
     }
 
     /**
@@ -294,7 +407,8 @@ public class AuthenticatedResourceProvider {
         if (jcrQueryProvider == null) {
             return null;
         }
-        return (Iterator) jcrQueryProvider.queryResources(this.resolveContext, transformQuery(query, language), language);
+        final String transformedQuery = transformQuery(query, language);
+        return this.call(() -> (Iterator) jcrQueryProvider.queryResources(this.resolveContext, transformedQuery, language));
     }
 
     /**
@@ -314,7 +428,7 @@ public class AuthenticatedResourceProvider {
     public boolean copy(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            return rp.copy(this.resolveContext, srcAbsPath, destAbsPath);
+            return this.call(() -> rp.copy(this.resolveContext, srcAbsPath, destAbsPath));
         }
         return false;
     }
@@ -325,11 +439,43 @@ public class AuthenticatedResourceProvider {
     public boolean move(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
         final ResourceProvider<Object> rp = this.providerHandler.getResourceProvider();
         if ( rp != null ) {
-            return rp.move(this.resolveContext, srcAbsPath, destAbsPath);
+            return this.call(() -> rp.move(this.resolveContext, srcAbsPath, destAbsPath));
         }
         return false;
     }
 
+    /**
+     * A call to the provider
+     * @param <T> The result type
+     * @param <E> The exception type
+     */
+    @FunctionalInterface
+    private interface ProviderCall<T, E extends Exception> {
+
+        T call() throws E;
+    }
+
+    /**
+     * Invoke a call to the provider and report it, if provider call metrics are enabled
+     * @param call The call
+     * @return The result of the call
+     * @throws E If the call fails
+     */
+    private <T, E extends Exception> T call(final ProviderCall<T, E> call) throws E {
+        if ( !this.metrics.isPresent() || !this.metrics.get().isProviderCallMetricsEnabled() ) {
+            return call.call();
+        }
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            this.metrics.get().reportProviderCall(this.getName(), System.nanoTime() - start, !success);
+        }
+    }
+
     private boolean canCreate(final ResourceResolver resolver, final String path) {
         boolean allowed = true;
         if ( this.useRAS ) {
@@ -433,22 +579,36 @@ public class AuthenticatedResourceProvider {
      * @return The wrapped resource or {@code null}
      */
     private @Nullable Resource wrapResource(@Nullable Resource rsrc) {
+        if (rsrc == null) {
+            return null;
+        }
+        return wrapResource(rsrc,
+                useRAS ? tracker.getProviderResourceAccessSecurity() : null,
+                tracker.getApplicationResourceAccessSecurity());
+    }
+
+    /**
+     * Wrap a resource with additional resource access security
+     * @param rsrc The resource or {@code null}.
+     * @param providerSecurity The provider resource access security, only used if {@link #useRAS} is set
+     * @param applicationSecurity The application resource access security or {@code null}
+     * @return The wrapped resource or {@code null}
+     */
+    private @Nullable Resource wrapResource(@Nullable Resource rsrc,
+            @Nullable final ResourceAccessSecurity providerSecurity,
+            @Nullable final ResourceAccessSecurity applicationSecurity) {
         Resource returnValue = null;
 
         if (useRAS && rsrc != null) {
-            final ResourceAccessSecurity resourceAccessSecurity = tracker.getProviderResourceAccessSecurity();
-            if (resourceAccessSecurity != null) {
-                returnValue = resourceAccessSecurity.getReadableResource(rsrc);
+            if (providerSecurity != null) {
+                returnValue = providerSecurity.getReadableResource(rsrc);
             }
         } else {
             returnValue = rsrc;
         }
 
-        if ( returnValue != null ) {
-            final ResourceAccessSecurity resourceAccessSecurity = tracker.getApplicationResourceAccessSecurity();
-            if (resourceAccessSecurity != null) {
-                returnValue = resourceAccessSecurity.getReadableResource(returnValue);
-            }
+        if ( returnValue != null && applicationSecurity != null ) {
+            returnValue = applicationSecurity.getReadableResource(returnValue);
         }
 
         return returnValue;
@@ -462,23 +622,54 @@ public class AuthenticatedResourceProvider {
         }
     }
 
+    /**
+     * Iterator applying resource access security to the resources of the provider.
+     * The resource access security services are looked up once, for the first
+     * resource, and the time spent filtering is reported for each resource returned.
+     */
     private class SecureIterator extends AbstractIterator<Resource> {
 
         private final Iterator<Resource> iterator;
 
+        private boolean initialized;
+
+        private ResourceAccessSecurity providerSecurity;
+
+        private ResourceAccessSecurity applicationSecurity;
+
+        /** Whether the filtering is reported to the metrics. */
+        private boolean report;
+
         public SecureIterator(Iterator<Resource> iterator) {
             this.iterator = iterator;
         }
 
         @Override
         protected Resource seek() {
-            while (iterator.hasNext()) {
-                final Resource resource = wrapResource(iterator.next());
-                if (resource != null) {
-                    return resource;
+            int checked = 0;
+            long duration = 0;
+            Resource result = null;
+            while (result == null && iterator.hasNext()) {
+                final Resource next = iterator.next();
+                if (!initialized) {
+                    this.providerSecurity = useRAS ? tracker.getProviderResourceAccessSecurity() : null;
+                    this.applicationSecurity = tracker.getApplicationResourceAccessSecurity();
+                    this.report = metrics.isPresent() && (useRAS || this.applicationSecurity != null);
+                    this.initialized = true;
+                }
+                if (report) {
+                    final long start = System.nanoTime();
+                    result = wrapResource(next, providerSecurity, applicationSecurity);
+                    duration += System.nanoTime() - start;
+                    checked++;
+                } else {
+                    result = wrapResource(next, providerSecurity, applicationSecurity);
                 }
             }
-            return null;
+            if (checked > 0) {
+                metrics.get().reportResourceAccessSecurityFiltering(checked, duration);
+            }
+            return result;
         }
     }
 
@@ -26,6 +26,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
 import org.apache.sling.resourceresolver.impl.providers.tree.Node;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
@@ -47,6 +48,9 @@ public class BasicResolveContext<T> implements ResolveContext<T> {
 
     private final String parentPath;
 
+    /** The parent provider and its resolve context, {@code null} if not looked up yet. */
+    private volatile Parent parent;
+
     public BasicResolveContext(@NotNull final ResourceResolver resolver,
             @NotNull final ProviderManager resolveContextManager,
             @NotNull final ResourceResolverControl control,
@@ -71,23 +75,31 @@ public class BasicResolveContext<T> implements ResolveContext<T> {
 
     @Override
     public ResolveContext<?> getParentResolveContext() {
-        final Object[] providerAndContext = getParentProviderAndContext();
-        return (ResolveContext<?>) (providerAndContext != null ? providerAndContext[1] : null);
+        return resolveParent().resolveContext;
     }
 
     @Override
     public ResourceProvider<?> getParentResourceProvider() {
-        final Object[] providerAndContext = getParentProviderAndContext();
-        return (ResourceProvider<?>) (providerAndContext != null ? providerAndContext[0] : null);
+        return resolveParent().provider;
     }
 
-    private Object[] getParentProviderAndContext() {
+    /**
+     * Look up the parent provider and its resolve context. The result is kept
+     * until the provider storage changes.
+     * @return The parent
+     */
+    private @NotNull Parent resolveParent() {
+        final ResourceProviderStorage storage = this.control.getResourceProviderStorage();
+        final Parent current = this.parent;
+        if ( current != null && current.storage == storage ) {
+            return current;
+        }
         ResourceProvider<?> parentProvider = null;
         ResolveContext<?> parentResolveContext = null;
         if ( this.parentPath != null ) {
             String path = this.parentPath;
             while ( path != null && parentProvider == null ) {
-                final Node<ResourceProviderHandler> node = this.control.getResourceProviderStorage().getTree().getBestMatchingNode(path);
+                final Node<ResourceProviderHandler> node = storage.getTree().getBestMatchingNode(path);
                 if ( node != null ) {
                     final ResourceProviderHandler handler = node.getValue();
                     try {
@@ -107,6 +119,28 @@ public class BasicResolveContext<T> implements ResolveContext<T> {
                 }
             }
         }
-        return parentProvider != null ? new Object[] {parentProvider, parentResolveContext} : null;
+        final Parent result = new Parent(storage, parentProvider, parentResolveContext);
+        this.parent = result;
+        return result;
+    }
+
+    /**
+     * The parent provider and its resolve context, looked up with a provider storage
+     */
+    private static final class Parent {
+
+        final ResourceProviderStorage storage;
+
+        final ResourceProvider<?> provider;
+
+        final ResolveContext<?> resolveContext;
+
+        Parent(final ResourceProviderStorage storage,
+                final ResourceProvider<?> provider,
+                final ResolveContext<?> resolveContext) {
+            this.storage = storage;
+            this.provider = provider;
+            this.resolveContext = resolveContext;
+        }
     }
 }
@@ -23,6 +23,10 @@ import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -32,6 +36,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.runtime.dto.AuthType;
 import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.resourceresolver.impl.helper.AbstractIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
@@ -65,10 +70,22 @@ public class ProviderManager {
 
     private final ResourceAccessSecurityTracker tracker;
 
+    private final Optional<ResourceResolverMetrics> metrics;
+
+    /** Provider states of concurrently authenticated providers, not yet registered. */
+    private Map<ResourceProviderHandler, Object> preauthenticated;
+
     public ProviderManager(@NotNull final ResourceResolver resolver, @NotNull final ResourceAccessSecurityTracker tracker) {
+        this(resolver, tracker, Optional.empty());
+    }
+
+    public ProviderManager(@NotNull final ResourceResolver resolver,
+            @NotNull final ResourceAccessSecurityTracker tracker,
+            @NotNull final Optional<ResourceResolverMetrics> metrics) {
         this.contextMap = new IdentityHashMap<ResourceProviderHandler, AuthenticatedResourceProvider>();
         this.resolver = resolver;
         this.tracker = tracker;
+        this.metrics = metrics;
     }
 
     /**
@@ -128,22 +145,155 @@ public class ProviderManager {
     public void authenticateAll(@NotNull final List<ResourceProviderHandler> handlers,
             @NotNull final ResourceResolverControl control)
     throws LoginException {
-        for (final ResourceProviderHandler h : handlers) {
-            try {
+        this.authenticateAll(handlers, control, null);
+    }
+
+    /**
+     * Authenticate all handlers. If an executor is provided, the providers
+     * are authenticated concurrently. The providers are registered with
+     * the control in the order of the handlers in both cases.
+     * If authentication fails to one provider, all successfully
+     * authenticated providers are logged out again.
+     * @param handlers List of handlers
+     * @param control the resource resolver control
+     * @param executor Optional executor to authenticate concurrently
+     * @throws LoginException If authentication fails to one provider
+     */
+    public void authenticateAll(@NotNull final List<ResourceProviderHandler> handlers,
+            @NotNull final ResourceResolverControl control,
+            @Nullable final Executor executor)
+    throws LoginException {
+        final long start = System.nanoTime();
+        try {
+            if ( executor != null && handlers.size() > 1 ) {
+                this.authenticateConcurrently(handlers, control, executor);
+            }
+            for (final ResourceProviderHandler h : handlers) {
                 this.getOrCreateProvider(h, control);
-            } catch ( final LoginException le ) {
-                // authentication failed, logout from all successful handlers
-                for(final Map.Entry<ResourceProviderHandler, AuthenticatedResourceProvider> entry : this.contextMap.entrySet()) {
-                    if ( entry.getValue() != AuthenticatedResourceProvider.UNAUTHENTICATED_PROVIDER ) {
-                        final ResourceProvider<Object> provider = entry.getKey().getResourceProvider();
-                        if ( provider != null ) {
-                            provider.logout(entry.getValue().getResolveContext().getProviderState());
-                        }
+            }
+            if ( this.metrics.isPresent() ) {
+                this.metrics.get().reportResourceResolverAuthentication(System.nanoTime() - start);
+            }
+        } catch ( final LoginException le ) {
+            // authentication failed, logout from all successful handlers
+            for(final Map.Entry<ResourceProviderHandler, AuthenticatedResourceProvider> entry : this.contextMap.entrySet()) {
+                if ( entry.getValue() != AuthenticatedResourceProvider.UNAUTHENTICATED_PROVIDER ) {
+                    final ResourceProvider<Object> provider = entry.getKey().getResourceProvider();
+                    if ( provider != null ) {
+                        provider.logout(entry.getValue().getResolveContext().getProviderState());
                     }
                 }
-                this.contextMap.clear();
-                control.clearAuthenticatedProviders();
-                throw le;
+            }
+            this.contextMap.clear();
+            control.clearAuthenticatedProviders();
+            throw le;
+        } finally {
+            this.logoutPreauthenticated();
+        }
+    }
+
+    /**
+     * Authenticate the providers requiring authentication concurrently.
+     * The first provider is authenticated in the calling thread, all others
+     * using the executor. The provider states are kept until the providers
+     * are created by {@link #getOrCreateProvider(ResourceProviderHandler, ResourceResolverControl)}.
+     * @param handlers List of handlers
+     * @param control the resource resolver control
+     * @param executor The executor
+     * @throws LoginException If authentication fails to one provider
+     */
+    private void authenticateConcurrently(@NotNull final List<ResourceProviderHandler> handlers,
+            @NotNull final ResourceResolverControl control,
+            @NotNull final Executor executor)
+    throws LoginException {
+        final List<ResourceProviderHandler> pending = new ArrayList<>();
+        final List<FutureTask<Object>> tasks = new ArrayList<>();
+        for (final ResourceProviderHandler h : handlers) {
+            final AuthType authType = h.getInfo().getAuthType();
+            if ( this.contextMap.containsKey(h) || (authType != AuthType.required && authType != AuthType.lazy) ) {
+                continue;
+            }
+            final ResourceProvider<Object> provider = h.useResourceProvider();
+            if ( provider != null ) {
+                pending.add(h);
+                tasks.add(new FutureTask<>(() -> authenticateProvider(h, provider, control)));
+            }
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            executor.execute(tasks.get(i));
+        }
+        if ( !tasks.isEmpty() ) {
+            tasks.get(0).run();
+        }
+
+        // wait for all tasks, even on failure, so that no provider state is lost
+        this.preauthenticated = new IdentityHashMap<>();
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            while ( true ) {
+                try {
+                    this.preauthenticated.put(pending.get(i), tasks.get(i).get());
+                    break;
+                } catch ( final InterruptedException ie ) {
+                    interrupted = true;
+                } catch ( final ExecutionException ee ) {
+                    logger.debug("Unable to login into resource provider " + pending.get(i).getResourceProvider(), ee.getCause());
+                    if ( failure == null ) {
+                        failure = ee.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        if ( failure instanceof LoginException ) {
+            throw (LoginException) failure;
+        } else if ( failure instanceof RuntimeException ) {
+            throw (RuntimeException) failure;
+        } else if ( failure instanceof Error ) {
+            throw (Error) failure;
+        } else if ( failure != null ) {
+            throw new LoginException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Logout from all concurrently authenticated providers which have
+     * not been registered.
+     */
+    private void logoutPreauthenticated() {
+        if ( this.preauthenticated != null ) {
+            for(final Map.Entry<ResourceProviderHandler, Object> entry : this.preauthenticated.entrySet()) {
+                final ResourceProvider<Object> provider = entry.getKey().getResourceProvider();
+                if ( provider != null ) {
+                    provider.logout(entry.getValue());
+                }
+            }
+            this.preauthenticated = null;
+        }
+    }
+
+    /**
+     * Call authenticate on the provider and report the time taken
+     * @param handler The resource provider handler
+     * @param provider The provider
+     * @param control The resource control
+     * @return The provider state
+     * @throws LoginException If authentication fails
+     */
+    private Object authenticateProvider(@NotNull final ResourceProviderHandler handler,
+            @NotNull final ResourceProvider<Object> provider,
+            @NotNull final ResourceResolverControl control) throws LoginException {
+        final long start = System.nanoTime();
+        try {
+            return provider.authenticate(control.getAuthenticationInfo());
+        } finally {
+            if ( this.metrics.isPresent() ) {
+                final String name = handler.getInfo().getName() != null ? handler.getInfo().getName() : handler.getInfo().getPath();
+                this.metrics.get().reportProviderAuthentication(name, System.nanoTime() - start);
             }
         }
     }
@@ -162,12 +312,17 @@ public class ProviderManager {
         boolean isAuthenticated = false;
         Object contextData = null;
         if ( (handler.getInfo().getAuthType() == AuthType.required || handler.getInfo().getAuthType() == AuthType.lazy) ) {
-            try {
-                contextData = provider.authenticate(control.getAuthenticationInfo());
+            if ( this.preauthenticated != null && this.preauthenticated.containsKey(handler) ) {
+                contextData = this.preauthenticated.remove(handler);
                 isAuthenticated = true;
-            } catch ( final LoginException le ) {
-                logger.debug("Unable to login into resource provider " + provider, le);
-                throw le;
+            } else {
+                try {
+                    contextData = authenticateProvider(handler, provider, control);
+                    isAuthenticated = true;
+                } catch ( final LoginException le ) {
+                    logger.debug("Unable to login into resource provider " + provider, le);
+                    throw le;
+                }
             }
         }
 
@@ -179,7 +334,8 @@ public class ProviderManager {
         final AuthenticatedResourceProvider rp = new AuthenticatedResourceProvider(handler,
                 handler.getInfo().getUseResourceAccessSecurity(),
                 context,
-                this.tracker);
+                this.tracker,
+                this.metrics);
         if ( isAuthenticated ) {
             this.authenticated.add(rp);
         }
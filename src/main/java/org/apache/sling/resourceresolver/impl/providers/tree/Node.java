@@ -49,6 +49,12 @@ public class Node<T> {
         return newNode;
     }
 
+    void removeChild(String name) {
+        if (children != null) {
+            children.remove(name);
+        }
+    }
+
     void setValue(T value) {
         this.value = value;
     }
@@ -20,6 +20,7 @@ package org.apache.sling.resourceresolver.impl.providers.tree;
 
 import static org.apache.commons.lang3.StringUtils.split;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -34,6 +35,45 @@ public class PathTree<T extends Pathable> {
         }
     }
 
+    /**
+     * Add a value, replacing the value with the same path
+     * @param value The value
+     */
+    public void add(T value) {
+        addNewValue(value);
+    }
+
+    /**
+     * Remove the value for a path. Nodes without value and children are removed
+     * @param path The path
+     * @return The removed value or {@code null}
+     */
+    public T remove(final String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        final List<Node<T>> nodes = new ArrayList<>();
+        final List<String> segments = new ArrayList<>();
+        Node<T> node = root;
+        Iterator<String> it = new PathSegmentIterator(path, 1);
+        while (it.hasNext()) {
+            String segment = it.next();
+            nodes.add(node);
+            segments.add(segment);
+            node = node.getChild(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        final T value = node.getValue();
+        node.setValue(null);
+        for (int i = nodes.size() - 1; i >= 0 && node.getValue() == null && node.getChildren().isEmpty(); i--) {
+            node = nodes.get(i);
+            node.removeChild(segments.get(i));
+        }
+        return value;
+    }
+
     private void addNewValue(T value) {
         Node<T> node = root;
         for (String segment : split(value.getPath(), '/')) {
@@ -304,6 +304,36 @@ public class MockedResourceResolverImplTest {
             public boolean resource_resolver_vanitypath_cache_in_background() {
                 return false;
             }
+
+            @Override
+            public boolean resource_resolver_alias_cache_in_background() {
+                return false;
+            }
+
+            @Override
+            public boolean resource_resolver_providerhandling_parallel_authentication() {
+                return false;
+            }
+
+            @Override
+            public boolean resource_resolver_observation_async() {
+                return false;
+            }
+
+            @Override
+            public int resource_resolver_observation_async_queue_size() {
+                return 1000;
+            }
+
+            @Override
+            public long resource_resolver_slow_resolution_threshold() {
+                return 0;
+            }
+
+            @Override
+            public int resource_resolver_slow_resolution_traces() {
+                return 20;
+            }
         });
 
         // configure using Bundle
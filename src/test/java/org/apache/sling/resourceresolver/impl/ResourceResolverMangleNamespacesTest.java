@@ -19,12 +19,14 @@
 package org.apache.sling.resourceresolver.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.Arrays;
 import java.util.Iterator;
 
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
+import javax.jcr.NamespaceException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
@@ -41,6 +43,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.slf4j.LoggerFactory;
 
 /** Test ResourceResolverImpl.mangleNamespaces methods */
 public class ResourceResolverMangleNamespacesTest {
@@ -139,6 +142,47 @@ public class ResourceResolverMangleNamespacesTest {
         assertEquals("/example.com/path/with:mangling", r.getPath());
     }
 
+    @Test
+    public void testKnownPrefixesAreCached() throws RepositoryException {
+        Mockito.when(mockedSession.getNamespacePrefixes()).thenReturn(new String[] {"with"});
+        assertEquals("/example.com/path/_with_colon", rr.map("/example.com/path/with:colon"));
+        assertEquals("/example.com/path/_with_colon", rr.map("/example.com/path/with:colon"));
+        Mockito.verify(mockedSession, Mockito.times(1)).getNamespaceURI("with");
+    }
+
+    @Test
+    public void testNoPrefix() throws RepositoryException {
+        Mockito.when(mockedSession.getNamespaceURI("no")).thenThrow(new NamespaceException());
+        assertEquals("/example.com/path/no:prefix/_with_colon", rr.map("/example.com/path/no:prefix/with:colon"));
+
+        final String path = "/example.com/path/without/colon";
+        assertSame(path, new JcrNamespaceMangler().mangleNamespaces(rr, LoggerFactory.getLogger(getClass()), path));
+        assertSame(path, new JcrNamespaceMangler().unmangleNamespaces(rr, LoggerFactory.getLogger(getClass()), path));
+    }
+
+    @Test
+    public void testNonPrefixesAreCached() throws RepositoryException {
+        Mockito.when(mockedSession.getNamespaceURI("no")).thenThrow(new NamespaceException());
+        assertEquals("/example.com/path/no:prefix", rr.map("/example.com/path/no:prefix"));
+        assertEquals("/example.com/path/no:prefix", rr.map("/example.com/path/no:prefix"));
+        Mockito.verify(mockedSession, Mockito.times(1)).getNamespaceURI("no");
+
+        // reading the prefixes again clears the cached candidates
+        assertEquals("/example.com/path/_with_colon", rr.map("/example.com/path/with:colon"));
+        assertEquals("/example.com/path/no:prefix", rr.map("/example.com/path/no:prefix"));
+        Mockito.verify(mockedSession, Mockito.times(2)).getNamespaceURI("no");
+    }
+
+    @Test
+    public void testMangleNoSession() throws RepositoryException {
+        Mockito.when(mockedSession.getNamespacePrefixes()).thenReturn(new String[] {"with"});
+        assertEquals("/example.com/path/_with_colon", rr.map("/example.com/path/with:colon"));
+
+        // known prefixes are not mangled without a session
+        activeSession = null;
+        assertEquals("/example.com/path/with:colon", rr.map("/example.com/path/with:colon"));
+    }
+
     @Test
     public void testUrlNoPath() {
         assertEquals("http://withSlash.com/", rr.map("http://withSlash.com/"));
@@ -21,8 +21,16 @@ package org.apache.sling.resourceresolver.impl;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.sling.commons.metrics.Gauge;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.Meter;
 import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
 import org.junit.Before;
 import org.junit.Rule;
@@ -57,9 +65,113 @@ public class ResourceResolverMetricsTest {
         metrics.setNumberOfVanityPathsSupplier(() -> 2L);
         assertThat(vanityPaths.getValue(),is(2L));
         assertThat(aliases.getValue(),is(3L));
-        
+
+        Gauge<Long> queuedOsgiEvents = getGauge(ResourceResolverMetrics.METRICS_PREFIX + ".numberOfQueuedOsgiEvents");
+        assertThat(queuedOsgiEvents.getValue(),is(0L));
+        metrics.setNumberOfQueuedOsgiEventsSupplier(() -> 5L);
+        assertThat(queuedOsgiEvents.getValue(),is(5L));
+
+        Gauge<Long> droppedOsgiEvents = getGauge(ResourceResolverMetrics.METRICS_PREFIX + ".numberOfDroppedOsgiEvents");
+        assertThat(droppedOsgiEvents.getValue(),is(0L));
+        metrics.setNumberOfDroppedOsgiEventsSupplier(() -> 4L);
+        assertThat(droppedOsgiEvents.getValue(),is(4L));
+
+        Gauge<Long> aliasCacheReady = getGauge(ResourceResolverMetrics.METRICS_PREFIX + ".aliasCacheReady");
+        assertThat(aliasCacheReady.getValue(),is(0L));
+        metrics.setAliasCacheReadySupplier(() -> 1L);
+        assertThat(aliasCacheReady.getValue(),is(1L));
     }
     
+    @Test
+    public void testOperationTimers() {
+        Timer timer = Mockito.mock(Timer.class);
+        Mockito.when(metricsService.timer(ResourceResolverMetrics.METRICS_PREFIX + ".operation.resolve./content")).thenReturn(timer);
+        assertThat(metrics.isOperationTimersEnabled(), is(false));
+
+        MockOsgi.modified(metrics, context.bundleContext(), Collections.<String, Object>singletonMap("operation.timers.enabled", true));
+        assertThat(metrics.isOperationTimersEnabled(), is(true));
+        metrics.reportOperation("resolve", "/content", 1000L);
+        metrics.reportOperation("resolve", "/content", 2000L);
+        Mockito.verify(timer).update(1000L, TimeUnit.NANOSECONDS);
+        Mockito.verify(timer).update(2000L, TimeUnit.NANOSECONDS);
+        // the timer is looked up once
+        Mockito.verify(metricsService, Mockito.times(1)).timer(ResourceResolverMetrics.METRICS_PREFIX + ".operation.resolve./content");
+
+        MockOsgi.modified(metrics, context.bundleContext(), Collections.<String, Object>singletonMap("operation.timers.enabled", false));
+        assertThat(metrics.isOperationTimersEnabled(), is(false));
+    }
+
+    @Test
+    public void testProviderCallStatistics() {
+        Mockito.when(metricsService.timer(Mockito.anyString())).thenReturn(Mockito.mock(Timer.class));
+        Mockito.when(metricsService.meter(Mockito.anyString())).thenReturn(Mockito.mock(Meter.class));
+
+        metrics.reportProviderCall("/content", 1000L, false);
+        metrics.reportProviderCall("/", 500L, false);
+        metrics.reportProviderCall("/content", 3000L, true);
+
+        List<ResourceResolverMetrics.ProviderCallStatistics> statistics = metrics.getProviderCallStatistics();
+        assertThat(statistics.size(), is(2));
+        assertThat(statistics.get(0).getName(), is("/content"));
+        assertThat(statistics.get(0).getCalls(), is(2L));
+        assertThat(statistics.get(0).getErrors(), is(1L));
+        assertThat(statistics.get(0).getTotalTime(), is(4000L));
+        assertThat(statistics.get(1).getName(), is("/"));
+        assertThat(statistics.get(1).getErrors(), is(0L));
+    }
+
+    @Test
+    public void testResourceResolverLifecycle() {
+        Meter serviceMeter = Mockito.mock(Meter.class);
+        Mockito.when(metricsService.meter(ResourceResolverMetrics.METRICS_PREFIX + ".resourceResolvers.opened.service")).thenReturn(serviceMeter);
+        metrics.reportResourceResolverOpened(ResourceResolverMetrics.RESOLVER_TYPE_SERVICE);
+        metrics.reportResourceResolverOpened(ResourceResolverMetrics.RESOLVER_TYPE_SERVICE);
+        Mockito.verify(serviceMeter, Mockito.times(2)).mark();
+
+        Gauge<Long> openResolvers = getGauge(ResourceResolverMetrics.METRICS_PREFIX + ".numberOfOpenResourceResolvers");
+        assertThat(openResolvers.getValue(), is(0L));
+        metrics.setNumberOfOpenResourceResolversSupplier(() -> 4L);
+        assertThat(openResolvers.getValue(), is(4L));
+    }
+
+    @Test
+    public void testResourceChangeListenerMetrics() {
+        Histogram histogram = Mockito.mock(Histogram.class);
+        Mockito.when(metricsService.histogram(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.queueDepth.listener")).thenReturn(histogram);
+        Timer lag = Mockito.mock(Timer.class);
+        Mockito.when(metricsService.timer(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.lag.listener")).thenReturn(lag);
+        Timer processing = Mockito.mock(Timer.class);
+        Mockito.when(metricsService.timer(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.processing.listener")).thenReturn(processing);
+        Meter changes = Mockito.mock(Meter.class);
+        Mockito.when(metricsService.meter(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.changes.listener")).thenReturn(changes);
+
+        metrics.reportResourceChangeListenerQueueDepth("listener", 1);
+        metrics.reportResourceChangeListenerQueueDepth("listener", 2);
+        metrics.reportResourceChangeListenerLag("listener", 5L);
+        metrics.reportResourceChangeListenerProcessing("listener", 3, 7L);
+
+        // the histogram is only looked up once
+        Mockito.verify(metricsService, Mockito.times(1)).histogram(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.queueDepth.listener");
+        Mockito.verify(histogram).update(1);
+        Mockito.verify(histogram).update(2);
+        Mockito.verify(lag).update(5L, TimeUnit.NANOSECONDS);
+        Mockito.verify(processing).update(7L, TimeUnit.NANOSECONDS);
+        Mockito.verify(changes).mark(3);
+    }
+
+    @Test
+    public void testNumberOfNamesIsBounded() {
+        Histogram histogram = Mockito.mock(Histogram.class);
+        Mockito.when(metricsService.histogram(Mockito.anyString())).thenReturn(histogram);
+        for (int i = 0; i < ResourceResolverMetrics.MAX_NAMES + 10; i++) {
+            metrics.reportResourceChangeListenerQueueDepth("listener" + i, 1);
+        }
+        // one histogram per name up to the maximum, and one for all other names
+        Mockito.verify(metricsService, Mockito.times(ResourceResolverMetrics.MAX_NAMES + 1)).histogram(Mockito.anyString());
+        Mockito.verify(metricsService).histogram(ResourceResolverMetrics.METRICS_PREFIX + ".resourceChangeListener.queueDepth." + ResourceResolverMetrics.OTHER_NAME);
+        Mockito.verify(histogram, Mockito.times(ResourceResolverMetrics.MAX_NAMES + 10)).update(1);
+    }
+
     private Gauge<Long> getGauge(String name) {
         String filter = String.format("(%s=%s)", Gauge.NAME,name);
         Gauge<Long>[] result = context.getServices(Gauge.class,filter);
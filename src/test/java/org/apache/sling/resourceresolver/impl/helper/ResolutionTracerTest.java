@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.sling.resourceresolver.impl.helper.ResolutionTrace.Stage;
+import org.junit.Test;
+
+public class ResolutionTracerTest {
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch ( final InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ResolutionTrace trace(final ResolutionTracer tracer, final String path, final long millis) {
+        final ResolutionTrace trace = tracer.start("resolve", path);
+        final long start = System.nanoTime();
+        sleep(millis);
+        trace.addStageTime(Stage.PATH_CANDIDATES, start);
+        tracer.finish(trace);
+        return trace;
+    }
+
+    @Test public void testThreshold() {
+        final ResolutionTracer tracer = new ResolutionTracer(20, 5);
+        trace(tracer, "/fast", 0);
+        final ResolutionTrace slow = trace(tracer, "/slow", 30);
+
+        final List<ResolutionTrace> traces = tracer.getSlowestTraces();
+        assertEquals(1, traces.size());
+        assertEquals("/slow", traces.get(0).getPath());
+        assertTrue(slow.getStageTime(Stage.PATH_CANDIDATES) > 0);
+        assertTrue(slow.getStageTime(Stage.PATH_CANDIDATES) <= slow.getDuration());
+        assertEquals(0, slow.getStageTime(Stage.ALIASES));
+    }
+
+    @Test public void testKeepsSlowest() {
+        final ResolutionTracer tracer = new ResolutionTracer(1, 2);
+        trace(tracer, "/a", 5);
+        trace(tracer, "/b", 40);
+        trace(tracer, "/c", 20);
+        trace(tracer, "/d", 2);
+
+        final List<ResolutionTrace> traces = tracer.getSlowestTraces();
+        assertEquals(2, traces.size());
+        assertEquals("/b", traces.get(0).getPath());
+        assertEquals("/c", traces.get(1).getPath());
+
+        tracer.clear();
+        assertTrue(tracer.getSlowestTraces().isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceDecorator;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+public class ResourceDecoratorTrackerTest {
+
+    private final ResourceDecoratorTracker tracker = new ResourceDecoratorTracker();
+
+    private final List<String> called = new ArrayList<>();
+
+    private Resource resource(final String path, final String resourceType) {
+        final Resource r = mock(Resource.class);
+        when(r.getPath()).thenReturn(path);
+        when(r.getResourceType()).thenReturn(resourceType);
+        when(r.getResourceMetadata()).thenReturn(new ResourceMetadata());
+        return r;
+    }
+
+    private void bind(final String name, final int ranking, final String[] paths, final String[] types) {
+        final Map<String, Object> props = new HashMap<>();
+        props.put(Constants.SERVICE_ID, (long) ranking);
+        props.put(Constants.SERVICE_RANKING, ranking);
+        if ( paths != null ) {
+            props.put(ResourceDecoratorTracker.PROPERTY_PATHS, paths);
+        }
+        if ( types != null ) {
+            props.put(ResourceDecoratorTracker.PROPERTY_RESOURCE_TYPES, types);
+        }
+        tracker.bindResourceDecorator(new ResourceDecorator() {
+
+            @Override
+            public Resource decorate(final Resource resource) {
+                called.add(name);
+                return resource;
+            }
+
+            @Override
+            public Resource decorate(final Resource resource, final HttpServletRequest request) {
+                return decorate(resource);
+            }
+        }, props);
+    }
+
+    private List<String> decorate(final String path, final String resourceType) {
+        called.clear();
+        tracker.decorate(resource(path, resourceType));
+        return new ArrayList<>(called);
+    }
+
+    @Test public void testUnrestricted() {
+        bind("a", 1, null, null);
+        bind("b", 2, null, null);
+        assertEquals(Arrays.asList("a", "b"), decorate("/content", "type"));
+        assertEquals(0, tracker.getSkippedDecorators());
+    }
+
+    @Test public void testRestrictedByPathAndType() {
+        bind("any", 1, null, null);
+        bind("content", 2, new String[] {"/content"}, null);
+        bind("page", 3, null, new String[] {"app/page", "app/other"});
+        bind("contentPage", 4, new String[] {"/content"}, new String[] {"app/page"});
+
+        assertEquals(Arrays.asList("any", "content", "page", "contentPage"), decorate("/content/a", "app/page"));
+        assertEquals(0, tracker.getSkippedDecorators());
+
+        assertEquals(Arrays.asList("any", "page"), decorate("/apps/a", "app/page"));
+        assertEquals(2, tracker.getSkippedDecorators());
+
+        assertEquals(Arrays.asList("any", "content"), decorate("/content/a", "app/component"));
+        assertEquals(4, tracker.getSkippedDecorators());
+
+        assertEquals(Arrays.asList("any", "content", "page"), decorate("/content", "app/other"));
+        assertEquals(5, tracker.getSkippedDecorators());
+
+        assertEquals(Arrays.asList("any", "content"), decorate("/content", null));
+        assertEquals(7, tracker.getSkippedDecorators());
+
+        // the selection is updated when decorators change
+        bind("component", 0, null, new String[] {"app/component"});
+        assertEquals(Arrays.asList("component", "any", "content"), decorate("/content/a", "app/component"));
+    }
+
+    @Test public void testMatchesDecoratedResource() {
+        final Map<String, Object> props = new HashMap<>();
+        props.put(Constants.SERVICE_ID, 1L);
+        props.put(Constants.SERVICE_RANKING, 1);
+        tracker.bindResourceDecorator(new ResourceDecorator() {
+
+            @Override
+            public Resource decorate(final Resource resource) {
+                called.add("retype");
+                return resource("/content/decorated", "app/decorated");
+            }
+
+            @Override
+            public Resource decorate(final Resource resource, final HttpServletRequest request) {
+                return decorate(resource);
+            }
+        }, props);
+        bind("page", 2, null, new String[] {"app/page"});
+        bind("decorated", 3, new String[] {"/content"}, new String[] {"app/decorated"});
+
+        assertEquals(Arrays.asList("retype", "decorated"), decorate("/apps/a", "app/page"));
+        assertEquals(1, tracker.getSkippedDecorators());
+    }
+
+    @Test public void testClose() {
+        bind("page", 1, null, new String[] {"app/page"});
+        tracker.close();
+        assertEquals(Arrays.<String>asList(), decorate("/content", "app/page"));
+    }
+}
@@ -81,6 +81,26 @@ public class ResourcePathIteratorTest {
         assertFinished(rpi);
     }
 
+    @Test public void testKnownDots() {
+        ResourcePathIterator rpi = new ResourcePathIterator(
+            "/root/child.print.a4.html/with/suffix/", new int[] {11, 17, 20}, 0);
+        assertNext("/root/child.print.a4.html/with/suffix", rpi);
+        assertNext("/root/child.print.a4", rpi);
+        assertNext("/root/child.print", rpi);
+        assertNext("/root/child", rpi);
+        assertFinished(rpi);
+    }
+
+    @Test public void testKnownDotsWithOffset() {
+        ResourcePathIterator rpi = new ResourcePathIterator(
+            "/apps.x/child.print.html", new int[] {5, 11}, 8);
+        assertNext("/apps.x/child.print.html", rpi);
+        assertNext("/apps.x/child.print", rpi);
+        assertNext("/apps.x/child", rpi);
+        assertNext("/apps", rpi);
+        assertFinished(rpi);
+    }
+
     @Test public void testNoSeparators() {
         final Iterator<String> rpi = new ResourcePathIterator(
             "MickeyMouseWasHere");
@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
@@ -238,6 +239,45 @@ public class ResourceResolverControlTest {
         verify(subProvider).logout(mockContext());
     }
 
+    /**
+     * Verifies that login and logout calls are invoked as expected if the
+     * providers are authenticated concurrently
+     */
+    @Test
+    public void loginLogoutConcurrently() throws LoginException {
+        final Executor executor = r -> new Thread(r).start();
+
+        context.getProviderManager().authenticateAll(handlers, crp, executor);
+
+        verify(rootProvider).authenticate(authInfo);
+        verify(subProvider).authenticate(authInfo);
+
+        crp.close();
+
+        verify(rootProvider).logout(mockContext());
+        verify(subProvider).logout(mockContext());
+    }
+
+    /**
+     * Verifies that all successfully authenticated providers are logged out
+     * if the concurrent authentication fails for one provider
+     */
+    @Test
+    public void loginFailureConcurrently() throws LoginException {
+        final Executor executor = r -> new Thread(r).start();
+        when(subProvider.authenticate(authInfo)).thenThrow(new LoginException("failed"));
+
+        try {
+            context.getProviderManager().authenticateAll(handlers, crp, executor);
+            fail("LoginException expected");
+        } catch ( final LoginException expected ) {
+            // expected
+        }
+
+        verify(rootProvider).logout(mockContext());
+        assertTrue(context.getProviderManager().getAllAuthenticated().isEmpty());
+    }
+
     private ResolveContext<Object> mockContext() {
         return (ResolveContext<Object>) Mockito.any();
     }
@@ -356,6 +396,23 @@ public class ResourceResolverControlTest {
         assertSame(somePathResource, all.get("/some/path"));
     }
 
+    /**
+     * Verifies the fast children check for synthetic, mounted and 'real' children
+     */
+    @Test
+    public void hasChildren() {
+        // synthetic /foo is found without asking the root provider
+        final Resource root = crp.getResource(context, "/", null, null, false);
+        assertTrue(crp.hasChildren(context, root));
+        Mockito.verify(rootProvider, Mockito.never()).listChildren((ResolveContext<Object>) Mockito.anyObject(), Mockito.eq(root));
+
+        // mounted provider at /some/path
+        assertTrue(crp.hasChildren(context, someRootResource));
+
+        // no mount points, no children from the provider
+        assertFalse(crp.hasChildren(context, somethingResource));
+    }
+
     /**
      * Checks that its correctly calculated whether a copy/move can be done with the
      * same provider
@@ -601,6 +658,40 @@ public class ResourceResolverControlTest {
             Arrays.asList(c4).iterator()), c5 );
     }
 
+    @Test
+    public void testListChildrenInternalIsLazy() throws LoginException {
+        final ResourceResolverControl control = new ResourceResolverControl(false, Collections.emptyMap(), null);
+
+        final ResourceResolverContext context = Mockito.mock(ResourceResolverContext.class);
+        final ProviderManager providerManager = Mockito.mock(ProviderManager.class);
+        Mockito.when(context.getProviderManager()).thenReturn(providerManager);
+
+        final ResourceProviderHandler root = Mockito.mock(ResourceProviderHandler.class);
+        Mockito.when(root.getPath()).thenReturn("/");
+
+        final ResourceProviderHandler sub1 = Mockito.mock(ResourceProviderHandler.class);
+        Mockito.when(sub1.getPath()).thenReturn("/libs/sub1");
+        final AuthenticatedResourceProvider sub1Provider = Mockito.mock(AuthenticatedResourceProvider.class);
+        Mockito.when(providerManager.getOrCreateProvider(sub1, control)).thenReturn(sub1Provider);
+
+        final PathTree<ResourceProviderHandler> tree = new PathTree<>(Arrays.asList(root, sub1));
+
+        final Resource parent = newMockResource("/libs");
+        final Resource c1 = newMockResource("/libs/sub1");
+        Mockito.when(sub1Provider.getResource("/libs/sub1", parent, null)).thenReturn(c1);
+
+        final Iterator<Resource> children = control.listChildrenInternal(context, tree.getNode("/libs"), parent,
+            Arrays.asList(newMockResource("/libs/a"), newMockResource("/libs/sub1")).iterator());
+        // mounted providers are not touched before the iterator is used
+        Mockito.verify(providerManager, Mockito.never()).getOrCreateProvider(sub1, control);
+
+        assertTrue(children.hasNext());
+        assertSame(c1, children.next());
+        assertTrue(children.hasNext());
+        assertEquals("/libs/a", children.next().getPath());
+        assertFalse(children.hasNext());
+    }
+
     private Map<String, Resource> mapChildren(final Iterator<Resource> children) {
         final Map<String, Resource> all = new HashMap<String, Resource>();
         while ( children.hasNext() ) {
@@ -16,6 +16,9 @@
  */
 package org.apache.sling.resourceresolver.impl.mapping;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -84,6 +87,39 @@ public class InterpolatorTest {
         assertEquals("Nothing should have been changed", 1, answer);
     }
 
+    @Test
+    public void test_compiled_template() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("one", "two");
+        values.put("escape", "x\\");
+        values.put("nested", "$[config:one]");
+        final Interpolator.Provider provider = (type, name, dir) -> {
+            String v = values.get(name);
+            if (v == null) {
+                v = dir.get(DIRECTIVE_DEFAULT);
+            }
+            return v;
+        };
+        final String[] texts = new String[] {
+            "no placeholder",
+            "$[config:one]",
+            "a $[config:one] and $[config:missing;default=three] b",
+            "$[config:missing]",
+            "\\$[config:one]-\\\\$[config:one]",
+            "$[config:escape]\\$[config:one]",
+            "$[config:nested]/$[config:one]",
+            "$[config:$[config:one];default=four]",
+            "$[config:one",
+            "$[one]"
+        };
+        for (final String text : texts) {
+            final Interpolator.Template template = Interpolator.compile(text);
+            assertEquals(text, Interpolator.replace(text, provider), template.replace(provider));
+            // the template can be evaluated again
+            assertEquals(text, Interpolator.replace(text, provider), template.replace(provider));
+        }
+    }
+
     private String getVariableFromBundleConfiguration(String name) {
         return "'" + name + "'";
     }
@@ -51,6 +51,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
@@ -68,6 +69,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -205,6 +207,100 @@ public class MapEntriesTest extends AbstractMappingMapEntriesTest {
         assertEquals("child", aliasMap.get("alias"));
     }
 
+    @Test
+    public void test_alias_support_init_in_background() throws Exception {
+        final Method addResource = MapEntries.class.getDeclaredMethod("addResource", String.class, AtomicBoolean.class);
+        addResource.setAccessible(true);
+
+        Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/parent");
+
+        final Resource result = mock(Resource.class);
+        when(result.getParent()).thenReturn(parent);
+        when(result.getPath()).thenReturn("/parent/child");
+        when(result.getName()).thenReturn("child");
+        when(result.getValueMap()).thenReturn(buildValueMap(ResourceResolverImpl.PROP_ALIAS, "alias"));
+
+        final Resource added = mock(Resource.class);
+        when(resourceResolver.getResource("/parent/child2")).thenReturn(added);
+        when(added.getParent()).thenReturn(parent);
+        when(added.getPath()).thenReturn("/parent/child2");
+        when(added.getName()).thenReturn("child2");
+        when(added.getValueMap()).thenReturn(buildValueMap(ResourceResolverImpl.PROP_ALIAS, "alias2"));
+
+        final Semaphore querying = new Semaphore(0);
+        final Semaphore release = new Semaphore(0);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains(ResourceResolverImpl.PROP_ALIAS)) {
+                    querying.release();
+                    release.acquire();
+                    return Collections.singleton(result).iterator();
+                } else {
+                    return Collections.<Resource> emptySet().iterator();
+                }
+            }
+        });
+
+        when(resourceResolverFactory.isAliasCacheInitInBackground()).thenReturn(true);
+        mapEntries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin, stringInterpolationProvider, metrics);
+
+        // while loading, aliases are resolved without the alias map and changes are queued
+        assertTrue(querying.tryAcquire(5, TimeUnit.SECONDS));
+        assertFalse(mapEntries.isOptimizeAliasResolutionEnabled());
+        addResource.invoke(mapEntries, "/parent/child2", new AtomicBoolean());
+        assertNull(mapEntries.getAliasMap("/parent"));
+
+        release.release();
+        final long end = System.currentTimeMillis() + 5000;
+        while (!mapEntries.isOptimizeAliasResolutionEnabled() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(mapEntries.isOptimizeAliasResolutionEnabled());
+
+        Map<String, String> aliasMap = mapEntries.getAliasMap("/parent");
+        assertNotNull(aliasMap);
+        assertEquals("child", aliasMap.get("alias"));
+        assertEquals("child2", aliasMap.get("alias2"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test_alias_cache_not_ready_after_failed_init_in_background() throws Exception {
+        final Semaphore failed = new Semaphore(0);
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            @Override
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains(ResourceResolverImpl.PROP_ALIAS)) {
+                    failed.release();
+                    throw new IllegalStateException("query failed");
+                }
+                return Collections.<Resource> emptySet().iterator();
+            }
+        });
+
+        final ResourceResolverMetrics resolverMetrics = mock(ResourceResolverMetrics.class);
+        final ArgumentCaptor<Supplier<Long>> aliasCacheReady = ArgumentCaptor.forClass((Class) Supplier.class);
+        when(resourceResolverFactory.isAliasCacheInitInBackground()).thenReturn(true);
+        mapEntries = new MapEntries(resourceResolverFactory, bundleContext, eventAdmin, stringInterpolationProvider, Optional.of(resolverMetrics));
+        Mockito.verify(resolverMetrics).setAliasCacheReadySupplier(aliasCacheReady.capture());
+
+        // wait until the failure has been handled and no more changes are queued
+        final Field aliasChangeQueue = MapEntries.class.getDeclaredField("aliasChangeQueue");
+        aliasChangeQueue.setAccessible(true);
+        assertTrue(failed.tryAcquire(5, TimeUnit.SECONDS));
+        final long end = System.currentTimeMillis() + 5000;
+        while (aliasChangeQueue.get(mapEntries) != null && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertNull(aliasChangeQueue.get(mapEntries));
+        assertFalse(mapEntries.isOptimizeAliasResolutionEnabled());
+        assertEquals(Long.valueOf(0L), aliasCacheReady.getValue().get());
+    }
+
     @Test
     public void test_that_duplicate_alias_doesnt_replace_first_alias() {
         Resource parent = mock(Resource.class);
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.sling.resourceresolver.impl.helper.URI;
+import org.junit.Test;
+
+public class MappedPathEscaperTest {
+
+    private final MappedPathEscaper escaper = new MappedPathEscaper();
+
+    private void assertSameAsUri(final String input, final String contextPath) {
+        final URI uri = new URI(input, false);
+        uri.setPath(contextPath == null ? uri.getPath() : contextPath.concat(uri.getPath()));
+
+        final int pathStart = MappedPathEscaper.getPathStart(input);
+        assertEquals(input, uri.toString(), escaper.escape(input, pathStart, contextPath, input.substring(pathStart)));
+    }
+
+    @Test public void testSameAsUri() {
+        final String[] inputs = new String[] {
+                "/",
+                "/content/page.html",
+                "/content/a b/c",
+                "/content/with+plus/and%percent",
+                "/content/a:b;c=d/e@f&g$h,i/j!k~l*m'n(o)",
+                "/content/äöü/€",
+                "/content/😀",
+                "/content/\ud800x",
+                "/content/trailing ",
+                "http://localhost/content/x y.html",
+                "http://localhost:4502/content/x",
+                "https://www.example.com/",
+                "svn+ssh://host-name.example/a/b"
+        };
+        for (final String input : inputs) {
+            assertSameAsUri(input, null);
+            assertSameAsUri(input, "/ctx");
+            assertSameAsUri(input, "/c tx");
+        }
+    }
+
+    @Test public void testUnchangedPathIsReturned() {
+        final String path = "/content/page.html";
+        assertSame(path, escaper.escape(path, 0, null, path));
+        assertSame(path, escaper.escape(path, 0, "", path));
+    }
+
+    @Test public void testFallback() {
+        final String[] inputs = new String[] {
+                "",
+                "relative/path",
+                "//host/path",
+                "/content/page.html?query",
+                "/content/page.html#fragment",
+                "http://host",
+                "http://host:8080",
+                "HTTP://host/path",
+                "http://host:/path",
+                "http://host:080/path",
+                "http://host:123456/path",
+                "http://user@host/path",
+                "http://[::1]/path",
+                "http://host_name/path",
+                "mailto:someone@example.com"
+        };
+        for (final String input : inputs) {
+            assertEquals(input, -1, MappedPathEscaper.getPathStart(input));
+        }
+    }
+}
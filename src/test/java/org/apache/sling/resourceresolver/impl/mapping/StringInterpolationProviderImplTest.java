@@ -325,6 +325,25 @@ public class StringInterpolationProviderImplTest {
         assertEquals("Wrong resolved line", "two-three", substituted);
     }
 
+    @Test
+    public void test_modified_configuration() {
+        when(stringInterpolationProviderConfiguration.placeHolderKeyValuePairs()).thenReturn(
+            new String[] { "one=two"}
+        );
+
+        StringInterpolationProviderImpl placeholderProvider = new StringInterpolationProviderImpl();
+        placeholderProvider.activate(bundleContext, stringInterpolationProviderConfiguration);
+
+        String line = "Here is $[config:one], too";
+        assertEquals("Wrong resolved line", "Here is two, too", placeholderProvider.substitute(line));
+
+        when(stringInterpolationProviderConfiguration.placeHolderKeyValuePairs()).thenReturn(
+            new String[] { "one=three"}
+        );
+        placeholderProvider.modified(bundleContext, stringInterpolationProviderConfiguration);
+        assertEquals("Wrong resolved line after modification", "Here is three, too", placeholderProvider.substitute(line));
+    }
+
     @Test
     public void test_deactivate_configuration() {
         when(stringInterpolationProviderConfiguration.placeHolderKeyValuePairs()).thenReturn(
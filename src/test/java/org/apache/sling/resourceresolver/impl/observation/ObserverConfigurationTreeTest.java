@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.junit.Test;
+
+public class ObserverConfigurationTreeTest {
+
+    private ObserverConfiguration config(final String... paths) {
+        return new BasicObserverConfiguration(PathSet.fromStrings(paths));
+    }
+
+    private String candidates(final ObserverConfigurationTree tree, final String path) {
+        final BitSet result = new BitSet();
+        tree.collectCandidates(path, result);
+        return result.toString();
+    }
+
+    @Test public void testCandidates() {
+        final ObserverConfigurationTree tree = new ObserverConfigurationTree(Arrays.asList(
+                config("/"),
+                config("/apps"),
+                config("/apps/app2", "/libs"),
+                config("glob:/apps/**/*.html"),
+                config("glob:/**/*.jsp")));
+
+        assertEquals("{0, 1, 3, 4}", candidates(tree, "/apps/app1/path1.html"));
+        assertEquals("{0, 1, 2, 3, 4}", candidates(tree, "/apps/app2"));
+        assertEquals("{0, 1, 3, 4}", candidates(tree, "/apps"));
+        assertEquals("{0, 2, 4}", candidates(tree, "/libs/foo"));
+        assertEquals("{0, 4}", candidates(tree, "/libsfoo"));
+        assertEquals("{0, 4}", candidates(tree, "/"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.apache.sling.resourceresolver.util.MockTestUtil.setInaccessibleField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+public class OsgiObservationBridgeTest {
+
+    private final OsgiObservationBridge bridge = new OsgiObservationBridge();
+
+    private final ResourceResolver resolver = mock(ResourceResolver.class);
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+
+    /** Released to let the bridge send the first event. */
+    private final CountDownLatch firstBlocked = new CountDownLatch(1);
+
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+
+    private CountDownLatch done;
+
+    @SuppressWarnings("unchecked")
+    private void activate(final int queueSize, final int batchSize, final int expectedEvents) throws Exception {
+        done = new CountDownLatch(expectedEvents);
+        final ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(Mockito.any(Map.class))).thenReturn(resolver);
+        final EventAdmin eventAdmin = mock(EventAdmin.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Event event = (Event) invocation.getArguments()[0];
+                if ( sent.isEmpty() ) {
+                    firstStarted.countDown();
+                    firstBlocked.await(5, TimeUnit.SECONDS);
+                }
+                sent.add((String) event.getProperty(SlingConstants.PROPERTY_PATH));
+                done.countDown();
+                return null;
+            }
+        }).when(eventAdmin).sendEvent(Mockito.any(Event.class));
+        setInaccessibleField("resolverFactory", bridge, factory);
+        setInaccessibleField("eventAdmin", bridge, eventAdmin);
+
+        final OsgiObservationBridgeConfiguration config = mock(OsgiObservationBridgeConfiguration.class);
+        when(config.queue_size()).thenReturn(queueSize);
+        when(config.batch_size()).thenReturn(batchSize);
+        when(config.post_events()).thenReturn(false);
+        when(config.delivery_threads()).thenReturn(1);
+        bridge.activate(config);
+    }
+
+    @After
+    public void deactivate() {
+        firstBlocked.countDown();
+        bridge.deactivate();
+    }
+
+    private List<ResourceChange> changes(final String... paths) {
+        final List<ResourceChange> changes = new ArrayList<>();
+        for(final String path : paths) {
+            changes.add(new ResourceChange(ChangeType.REMOVED, path, false));
+        }
+        return changes;
+    }
+
+    @Test public void testChangesAreSentInBatches() throws Exception {
+        activate(10, 2, 6);
+        bridge.onChange(changes("/first"));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // queued while the first event is sent
+        bridge.onChange(changes("/a", "/b", "/c", "/d", "/e"));
+        firstBlocked.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("/first", "/a", "/b", "/c", "/d", "/e"), sent);
+        // one refresh for the first change and for each batch of two changes
+        verify(resolver, times(4)).refresh();
+    }
+
+    @Test public void testFullQueueDropsChanges() throws Exception {
+        activate(2, 10, 3);
+        bridge.onChange(changes("/first"));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // does not block although the queue is full
+        bridge.onChange(changes("/a", "/b", "/c", "/d"));
+        assertEquals(2, bridge.getDroppedChanges());
+        firstBlocked.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("/first", "/a", "/b"), sent);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.Test;
+
+public class ResourceChangeListImplTest {
+
+    private static final List<String> SEARCH_PATH = Arrays.asList("/apps/", "/libs/");
+
+    private ResourceChangeListImpl changes(final String... paths) {
+        final List<ResourceChange> list = new ArrayList<>();
+        for(final String p : paths) {
+            list.add(new ResourceChange(ChangeType.ADDED, p, false));
+        }
+        return ResourceChangeListImpl.of(SEARCH_PATH, list);
+    }
+
+    private List<String> paths(final List<ResourceChange> changes) {
+        final List<String> result = new ArrayList<>();
+        for(final ResourceChange c : changes) {
+            result.add(c.getPath());
+        }
+        return result;
+    }
+
+    @Test public void testViews() {
+        final ResourceChangeListImpl all = changes("/a", "/b", "/c", "/d", "/e");
+        final ResourceChangeListImpl view = all.view(new int[] {1, 2, 4}, 3);
+        assertEquals(Arrays.asList("/b", "/c", "/e"), paths(view));
+
+        // view of a view
+        final ResourceChangeListImpl subView = view.view(new int[] {0, 2, 0}, 2);
+        assertEquals(Arrays.asList("/b", "/e"), paths(subView));
+        assertTrue(Arrays.equals(new String[] {"/apps/", "/libs/"}, subView.getSearchPath()));
+
+        // view with all changes is the list itself
+        assertSame(view, view.view(new int[] {0, 1, 2}, 3));
+        assertTrue(all.view(null, 0).isEmpty());
+    }
+
+    @Test public void testLocked() {
+        final ResourceChangeListImpl all = changes("/a", "/b");
+        try {
+            all.add(new ResourceChange(ChangeType.ADDED, "/c", false));
+            fail();
+        } catch ( final UnsupportedOperationException expected ) {
+            // expected
+        }
+        try {
+            all.view(new int[] {0}, 1).remove(0);
+            fail();
+        } catch ( final UnsupportedOperationException expected ) {
+            // expected
+        }
+        assertEquals(2, all.size());
+    }
+
+    @Test public void testAddAll() {
+        final ResourceChangeListImpl merged = new ResourceChangeListImpl(SEARCH_PATH);
+        merged.addAll(changes("/a", "/b"));
+        merged.addAll(changes("/c").view(new int[] {0}, 1));
+        merged.lock();
+        assertEquals(Arrays.asList("/a", "/b", "/c"), paths(merged));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.apache.sling.api.resource.observation.ResourceChangeListener.PATHS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+
+public class ResourceChangeListenerDispatcherTest {
+
+    private final ResourceChangeListenerDispatcher dispatcher = new ResourceChangeListenerDispatcher(
+            Collections.singletonList("/apps/"), 2, () -> Optional.empty());
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResourceChangeListenerInfo info(final ResourceChangeListener listener) {
+        final ServiceReference<ResourceChangeListener> ref = mock(ServiceReference.class);
+        when(ref.getProperty(PATHS)).thenReturn(new String[] {"/"});
+        final ResourceChangeListenerInfo info = new ResourceChangeListenerInfo(ref, Collections.singletonList("/apps/"));
+        info.setListener(listener);
+        return info;
+    }
+
+    private List<ResourceChange> changes(final String path) {
+        final ResourceChangeListImpl list = new ResourceChangeListImpl(Collections.singletonList("/apps/"));
+        list.add(new ResourceChange(ChangeType.ADDED, path, false));
+        list.lock();
+        return list;
+    }
+
+    @Test public void testSlowListenerDoesNotBlockOthers() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final ResourceChangeListenerInfo slow = info(changes -> {
+            try {
+                blocked.await();
+            } catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final ResourceChangeListenerInfo fast = info(changes -> delivered.countDown());
+
+        dispatcher.dispatch(slow, changes("/a"));
+        dispatcher.dispatch(fast, changes("/a"));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        blocked.countDown();
+    }
+
+    @Test public void testOverflowIsCoalesced() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<List<String>> received = Collections.synchronizedList(new ArrayList<>());
+        final ResourceChangeListenerInfo info = info(changes -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+            final List<String> paths = new ArrayList<>();
+            for(final ResourceChange c : changes) {
+                paths.add(c.getPath());
+            }
+            received.add(paths);
+            done.countDown();
+        });
+
+        dispatcher.dispatch(info, changes("/a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(info, changes("/b"));
+        dispatcher.dispatch(info, changes("/c"));
+        dispatcher.dispatch(info, changes("/d"));
+        assertEquals(2, dispatcher.getQueueSize(info));
+
+        blocked.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, received.size());
+        assertEquals(Collections.singletonList("/a"), received.get(0));
+        assertEquals(Collections.singletonList("/b"), received.get(1));
+        assertEquals(Arrays.asList("/c", "/d"), received.get(2));
+    }
+
+    @Test public void testCoalescedChangesAreBounded() throws Exception {
+        final ResourceChangeListenerDispatcher bounded = new ResourceChangeListenerDispatcher(
+                Collections.singletonList("/apps/"), 2, 3, 1, () -> Optional.empty());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<List<String>> received = Collections.synchronizedList(new ArrayList<>());
+        final ResourceChangeListenerInfo info = info(changes -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+            final List<String> paths = new ArrayList<>();
+            for(final ResourceChange c : changes) {
+                paths.add(c.getPath());
+            }
+            received.add(paths);
+            done.countDown();
+        });
+        try {
+            bounded.dispatch(info, changes("/a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for(final String path : new String[] {"/b", "/c", "/d"}) {
+                bounded.dispatch(info, changes(path));
+            }
+            // two changes do not fit into the coalesced list anymore
+            final ResourceChangeListImpl overflow = new ResourceChangeListImpl(Collections.singletonList("/apps/"));
+            overflow.add(new ResourceChange(ChangeType.ADDED, "/e", false));
+            overflow.add(new ResourceChange(ChangeType.ADDED, "/f", false));
+            overflow.lock();
+            bounded.dispatch(info, overflow);
+            // a smaller change list is dropped as well until the queue has been drained
+            bounded.dispatch(info, changes("/g"));
+            assertEquals(2, bounded.getQueueSize(info));
+            assertEquals(3, bounded.getDroppedChanges());
+
+            blocked.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singletonList("/b"), received.get(1));
+            assertEquals(Arrays.asList("/c", "/d"), received.get(2));
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    @Test public void testRemovedListenerIsNotQueued() {
+        final List<List<ResourceChange>> received = Collections.synchronizedList(new ArrayList<>());
+        final ResourceChangeListenerInfo info = info(received::add);
+        info.clearListener();
+        dispatcher.remove(info);
+
+        dispatcher.dispatch(info, changes("/a"));
+        assertEquals(0, dispatcher.getQueueSize(info));
+        assertTrue(received.isEmpty());
+    }
+}
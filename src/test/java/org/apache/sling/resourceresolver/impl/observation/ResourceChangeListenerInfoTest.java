@@ -16,6 +16,7 @@
  ******************************************************************************/
 package org.apache.sling.resourceresolver.impl.observation;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -26,6 +27,8 @@ import java.util.Set;
 
 import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 
 public class ResourceChangeListenerInfoTest {
@@ -63,4 +66,21 @@ public class ResourceChangeListenerInfoTest {
         assertTrue("PathSet " + paths.toString() + " does not contain glob:/apps/**/*.html.", paths.contains("glob:/apps/**/*.html"));
         assertTrue("PathSet " + paths.toString() + " does not contain glob:/libs/**/*.html.", paths.contains("glob:/libs/**/*.html"));
     }
+
+    @Test
+    public void testStableName() {
+        ServiceReference reference = mock(ServiceReference.class);
+        when(reference.getProperty(ResourceChangeListener.PATHS)).thenReturn(new String[] {"/"});
+        when(reference.getProperty(Constants.SERVICE_ID)).thenReturn(42L);
+        assertEquals(ResourceChangeListenerInfo.UNKNOWN_NAME, new ResourceChangeListenerInfo(reference, SEARCH_PATHS).getName());
+
+        // the service id changes on every registration, the bundle name does not
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("org.example.bundle");
+        when(reference.getBundle()).thenReturn(bundle);
+        assertEquals("org.example.bundle", new ResourceChangeListenerInfo(reference, SEARCH_PATHS).getName());
+
+        when(reference.getProperty("component.name")).thenReturn("org.example.Listener");
+        assertEquals("org.example.Listener", new ResourceChangeListenerInfo(reference, SEARCH_PATHS).getName());
+    }
 }
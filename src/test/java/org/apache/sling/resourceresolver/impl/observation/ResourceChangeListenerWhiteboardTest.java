@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.observation;
+
+import static org.apache.sling.resourceresolver.util.MockTestUtil.getInaccessibleField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker.ObservationReporterGenerator;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.ServiceRegistration;
+
+public class ResourceChangeListenerWhiteboardTest {
+
+    @Rule
+    public OsgiContext context = new OsgiContext();
+
+    private final ResourceChangeListenerWhiteboard whiteboard = new ResourceChangeListenerWhiteboard();
+
+    /** The mount points of the providers of the mocked tracker. */
+    private final List<String> providers = new ArrayList<>();
+
+    /** The reporters created for the providers on the last update. */
+    private final Map<String, ObservationReporter> providerReporters = new HashMap<>();
+
+    /** Incremented after the reporters are updated, possibly by the update thread. */
+    private volatile int updates;
+
+    @Before
+    public void setup() {
+        final ResourceProviderTracker tracker = mock(ResourceProviderTracker.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final ObservationReporterGenerator generator = (ObservationReporterGenerator) invocation.getArguments()[0];
+                providerReporters.clear();
+                for(final String path : providers) {
+                    providerReporters.put(path, generator.create(new Path(path), PathSet.EMPTY_SET));
+                }
+                updates++;
+                return null;
+            }
+        }).when(tracker).setObservationReporterGenerator(Mockito.any(ObservationReporterGenerator.class));
+        providers.add("/a");
+        providers.add("/b");
+        whiteboard.activate(context.bundleContext(), tracker, Collections.singletonList("/apps/"));
+    }
+
+    @After
+    public void deactivate() {
+        whiteboard.deactivate();
+    }
+
+    private ServiceRegistration<ResourceChangeListener> register(final String path, final List<List<ResourceChange>> received) {
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put(ResourceChangeListener.PATHS, path);
+        return context.bundleContext().registerService(ResourceChangeListener.class, received::add, props);
+    }
+
+    private List<ResourceChange> changes(final String path) {
+        return Collections.singletonList(new ResourceChange(ChangeType.ADDED, path, false));
+    }
+
+    /**
+     * Wait until the reporters have been updated the expected number of times
+     */
+    private void awaitUpdates(final int expected) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while ( updates < expected && System.currentTimeMillis() < end ) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, updates);
+    }
+
+    @Test public void testAddedListenersAreBatched() throws InterruptedException {
+        assertEquals(1, updates);
+        final List<List<ResourceChange>> received = new ArrayList<>();
+        register("/a", received);
+        register("/b", received);
+        register("/a/c", received);
+
+        // all listeners are applied with a single update
+        awaitUpdates(2);
+        Thread.sleep(200);
+        assertEquals(2, updates);
+        providerReporters.get("/a").reportChanges(changes("/a/x"), false);
+        assertEquals(1, received.size());
+    }
+
+    @Test public void testRemovedListenerIsSkippedImmediately() throws InterruptedException {
+        final List<List<ResourceChange>> received = new ArrayList<>();
+        final ServiceRegistration<ResourceChangeListener> reg = register("/a", received);
+        awaitUpdates(2);
+        final ObservationReporter reporter = providerReporters.get("/a");
+
+        reg.unregister();
+        // the reporter skips the removed listener before it is rebuilt
+        reporter.reportChanges(changes("/a/x"), false);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test public void testReportersAreReused() throws InterruptedException {
+        register("/a", new ArrayList<>());
+        awaitUpdates(2);
+        final ObservationReporter a = providerReporters.get("/a");
+        final ObservationReporter b = providerReporters.get("/b");
+
+        // a listener for /b does not change the reporter of /a
+        register("/b", new ArrayList<>());
+        awaitUpdates(3);
+        assertSame(a, providerReporters.get("/a"));
+        assertNotSame(b, providerReporters.get("/b"));
+    }
+
+    @Test public void testUnusedReportersAreRemoved() throws InterruptedException {
+        final Map<?, ?> reporters = getInaccessibleField("reporters", whiteboard, Map.class);
+        assertEquals(2, reporters.size());
+
+        providers.remove("/b");
+        register("/a", new ArrayList<>());
+        awaitUpdates(2);
+        assertEquals(1, reporters.size());
+    }
+}
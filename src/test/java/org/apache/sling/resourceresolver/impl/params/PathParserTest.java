@@ -19,6 +19,7 @@
 
 package org.apache.sling.resourceresolver.impl.params;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -163,6 +164,23 @@ public class PathParserTest {
         testInvalidParams("/content/test.html/suffix;key=value");
     }
 
+    @Test
+    public void dotsAreRecordedInPathWithoutParameters() {
+        parser.parse("/content/test.sel.html");
+        assertArrayEquals(new int[] {13, 17}, parser.getDots());
+
+        parser.parse("/content/test;v='1.0'.sel.html/suffix.txt");
+        assertEquals("/content/test.sel.html/suffix.txt", parser.getPath());
+        assertArrayEquals(new int[] {13, 17, 29}, parser.getDots());
+
+        parser.parse("/content/test.html;v=1.0");
+        assertEquals("/content/test.html", parser.getPath());
+        assertArrayEquals(new int[] {13}, parser.getDots());
+
+        parser.parse("/content/test");
+        assertArrayEquals(new int[0], parser.getDots());
+    }
+
     private static Map<String, String> map(String... values) {
         Map<String, String> m = new HashMap<String, String>();
         for (int i = 0; i < values.length; i += 2) {
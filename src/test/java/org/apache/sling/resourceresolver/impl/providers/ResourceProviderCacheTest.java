@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.providers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.api.resource.path.Path;
+import org.apache.sling.api.resource.path.PathSet;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.resourceresolver.impl.observation.BasicObserverConfiguration;
+import org.apache.sling.spi.resource.provider.ObservationReporter;
+import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ResourceProviderCacheTest {
+
+    private final ResourceResolver resolver = mock(ResourceResolver.class);
+
+    private Resource newResource(final String path) {
+        final Resource rsrc = mock(Resource.class);
+        when(rsrc.getPath()).thenReturn(path);
+        when(rsrc.getResourceType()).thenReturn("type");
+        when(rsrc.getResourceMetadata()).thenReturn(new ResourceMetadata());
+        when(rsrc.getValueMap()).thenReturn(new ValueMapDecorator(Collections.<String, Object>singletonMap("prop", path)));
+        return rsrc;
+    }
+
+    private List<Resource> newResources(final String parent, final int count) {
+        final List<Resource> children = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            children.add(newResource(parent + "/c" + i));
+        }
+        return children;
+    }
+
+    private void consume(final Iterator<Resource> iter) {
+        while ( iter.hasNext() ) {
+            iter.next();
+        }
+    }
+
+    @Test public void testGetAndPut() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        final Resource a = newResource("/a");
+
+        assertNull(cache.getResource("user", "/a"));
+        cache.putResource("user", "/a", a, cache.getGeneration());
+        cache.putResource("user", "/b", null, cache.getGeneration());
+
+        final Resource cached = cache.getResource("user", "/a").getResource(resolver);
+        assertEquals("/a", cached.getPath());
+        assertEquals("type", cached.getResourceType());
+        assertEquals("/a", cached.getValueMap().get("prop", String.class));
+        // negative lookups are cached as well
+        assertNotNull(cache.getResource("user", "/b"));
+        assertNull(cache.getResource("user", "/b").getResource(resolver));
+        // entries are kept per user
+        assertNull(cache.getResource("other", "/a"));
+        // resources and children are cached separately
+        assertNull(cache.getChildren("user", "/a"));
+    }
+
+    @Test public void testCachedResourceIsBoundToResolver() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        final Resource a = newResource("/a");
+        a.getResourceMetadata().setResolutionPath("/a");
+        cache.putResource("user", "/a", a, cache.getGeneration());
+
+        final Resource cached = cache.getResource("user", "/a").getResource(resolver);
+        assertSame(resolver, cached.getResourceResolver());
+        assertNotSame(a.getResourceMetadata(), cached.getResourceMetadata());
+        assertEquals("/a", cached.getResourceMetadata().getResolutionPath());
+        cached.getResourceMetadata().lock();
+        // a second resolver gets its own unlocked metadata
+        final Resource other = cache.getResource("user", "/a").getResource(mock(ResourceResolver.class));
+        other.getResourceMetadata().setResolutionPath("/b");
+
+        // adapting does not reach the resource of the provider
+        cached.adaptTo(Integer.class);
+        verify(a, never()).adaptTo(Mockito.any(Class.class));
+    }
+
+    @Test public void testExpiry() throws Exception {
+        final ResourceProviderCache cache = new ResourceProviderCache(1, 10);
+        cache.putResource("user", "/a", newResource("/a"), cache.getGeneration());
+        Thread.sleep(10);
+        assertNull(cache.getResource("user", "/a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testSizeBound() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 2);
+        cache.putResource("user", "/a", newResource("/a"), cache.getGeneration());
+        cache.putResource("user", "/b", newResource("/b"), cache.getGeneration());
+        // access /a so /b is the least recently used entry
+        cache.getResource("user", "/a");
+        cache.putResource("user", "/c", newResource("/c"), cache.getGeneration());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getResource("user", "/a"));
+        assertNull(cache.getResource("user", "/b"));
+        assertNotNull(cache.getResource("user", "/c"));
+    }
+
+    @Test public void testChildrenCountTowardsSize() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 5);
+        cache.putResource("user", "/a", newResource("/a"), cache.getGeneration());
+        cache.putResource("user", "/b", newResource("/b"), cache.getGeneration());
+        // the list and its three children take four of the five slots
+        consume(cache.putChildren("user", "/c", newResources("/c", 3).iterator(), cache.getGeneration()));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.getResource("user", "/a"));
+        assertNotNull(cache.getResource("user", "/b"));
+        assertNotNull(cache.getChildren("user", "/c"));
+    }
+
+    @Test public void testChildren() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 1000);
+        final List<Resource> children = newResources("/a", 3);
+
+        final Iterator<Resource> iter = cache.putChildren("user", "/a", children.iterator(), cache.getGeneration());
+        // the children of the provider are returned
+        assertSame(children.get(0), iter.next());
+        // nothing is cached before the iteration is complete
+        assertNull(cache.getChildren("user", "/a"));
+        consume(iter);
+
+        final Iterator<Resource> cached = cache.getChildren("user", "/a").getChildren(resolver);
+        for(final Resource child : children) {
+            final Resource c = cached.next();
+            assertEquals(child.getPath(), c.getPath());
+            assertSame(resolver, c.getResourceResolver());
+        }
+        assertFalse(cached.hasNext());
+
+        assertNull(cache.putChildren("user", "/b", null, cache.getGeneration()));
+        assertNull(cache.getChildren("user", "/b").getChildren(resolver));
+    }
+
+    @Test public void testLargeChildrenAreNotCached() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 1000);
+        final List<Resource> children = newResources("/a", ResourceProviderCache.MAX_CACHED_CHILDREN + 1);
+
+        final Iterator<Resource> iter = cache.putChildren("user", "/a", children.iterator(), cache.getGeneration());
+        int count = 0;
+        while ( iter.hasNext() ) {
+            assertSame(children.get(count), iter.next());
+            count++;
+        }
+        assertEquals(children.size(), count);
+        assertNull(cache.getChildren("user", "/a"));
+    }
+
+    @Test public void testInvalidate() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        cache.putResource("user", "/a", newResource("/a"), cache.getGeneration());
+        cache.putResource("other", "/a/b", newResource("/a/b"), cache.getGeneration());
+        cache.putResource("user", "/ab", newResource("/ab"), cache.getGeneration());
+        cache.putResource("user", "/", newResource("/"), cache.getGeneration());
+        consume(cache.putChildren("user", "/", newResources("", 1).iterator(), cache.getGeneration()));
+        consume(cache.putChildren("user", "/x", Collections.<Resource>emptyIterator(), cache.getGeneration()));
+
+        cache.invalidate(Collections.singletonList(new ResourceChange(ChangeType.REMOVED, "/a", false)));
+
+        assertNull(cache.getResource("user", "/a"));
+        assertNull(cache.getResource("other", "/a/b"));
+        assertNull(cache.getChildren("user", "/"));
+        assertNotNull(cache.getResource("user", "/"));
+        assertNotNull(cache.getResource("user", "/ab"));
+        assertNotNull(cache.getChildren("user", "/x"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test public void testInvalidationDuringLoad() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        final long generation = cache.getGeneration();
+        final Iterator<Resource> iter = cache.putChildren("user", "/", newResources("", 2).iterator(), generation);
+        // a change is reported while the results are loaded
+        cache.invalidate(Collections.singletonList(new ResourceChange(ChangeType.ADDED, "/a", false)));
+        cache.putResource("user", "/a", newResource("/a"), generation);
+        consume(iter);
+
+        assertNull(cache.getResource("user", "/a"));
+        assertNull(cache.getChildren("user", "/"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void testWrapReporter() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        final ObservationReporter reporter = mock(ObservationReporter.class);
+        when(reporter.getObserverConfigurations()).thenReturn(Collections.<ObserverConfiguration>emptyList());
+
+        final ObservationReporter wrapped = cache.wrap(reporter, new Path("/"), PathSet.EMPTY_SET);
+        assertEquals(1, wrapped.getObserverConfigurations().size());
+        final ObserverConfiguration cacheConfig = wrapped.getObserverConfigurations().get(0);
+
+        cache.putResource("user", "/a", newResource("/a"), cache.getGeneration());
+        final List<ResourceChange> changes = Collections.singletonList(new ResourceChange(ChangeType.CHANGED, "/a", false));
+        wrapped.reportChanges(cacheConfig, changes, false);
+
+        assertNull(cache.getResource("user", "/a"));
+        // changes for the cache configuration are not passed on
+        verify(reporter, never()).reportChanges(cacheConfig, changes, false);
+    }
+
+    @Test public void testWrapReporterWithCoveringConfig() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 10);
+        final ObserverConfiguration config = new BasicObserverConfiguration(PathSet.fromStrings("/"),
+                EnumSet.allOf(ChangeType.class), true, PathSet.EMPTY_SET, null);
+        final ObservationReporter reporter = mock(ObservationReporter.class);
+        when(reporter.getObserverConfigurations()).thenReturn(Collections.singletonList(config));
+
+        final ObservationReporter wrapped = cache.wrap(reporter, new Path("/content"), PathSet.EMPTY_SET);
+        // no additional configuration is needed
+        assertEquals(1, wrapped.getObserverConfigurations().size());
+
+        cache.putResource("user", "/content/a", newResource("/content/a"), cache.getGeneration());
+        final List<ResourceChange> changes = Collections.singletonList(new ResourceChange(ChangeType.CHANGED, "/content/a", false));
+        wrapped.reportChanges(config, changes, false);
+
+        assertNull(cache.getResource("user", "/content/a"));
+        verify(reporter).reportChanges(config, changes, false);
+        assertEquals(0, cache.size());
+    }
+}
@@ -22,10 +22,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.api.resource.path.Path;
@@ -37,6 +42,7 @@ import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker.
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderTracker.ObservationReporterGenerator;
 import org.apache.sling.spi.resource.provider.ObservationReporter;
 import org.apache.sling.spi.resource.provider.ObserverConfiguration;
+import org.apache.sling.spi.resource.provider.ProviderContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
 import org.junit.Before;
@@ -237,6 +243,143 @@ public class ResourceProviderTrackerTest {
         assertTrue(tracker.getResourceProviderStorage().getAllHandlers().isEmpty());
     }
 
+    @Test
+    public void testBulkRegistrationOnActivation() throws Exception {
+        for(int i = 0; i < 10; i++) {
+            @SuppressWarnings("unchecked")
+            final ResourceProvider<Object> rp = mock(ResourceProvider.class);
+            fixture.registerResourceProvider(rp, "/path" + i, AuthType.no);
+        }
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> shadowed = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(shadowed, "/path0", AuthType.no, -100);
+
+        final AtomicInteger addedCalled = new AtomicInteger();
+        final ResourceProviderTracker tracker = new ResourceProviderTracker();
+        tracker.setObservationReporterGenerator(new SimpleObservationReporterGenerator(new NoDothingObservationReporter()));
+        tracker.activate(context.bundleContext(), eventAdmin, new ChangeListener() {
+
+            @Override
+            public void providerAdded() {
+                addedCalled.incrementAndGet();
+            }
+
+            @Override
+            public void providerRemoved(String name, String pid, boolean stateful, boolean used) {
+                // nothing to do
+            }
+        });
+
+        // the providers available on activation are added at once
+        assertEquals(1, addedCalled.get());
+        assertEquals(10, tracker.getResourceProviderStorage().getAllHandlers().size());
+
+        final RuntimeDTO dto = new RuntimeDTO();
+        tracker.fill(dto);
+        assertEquals(10, dto.providers.length);
+        assertEquals(1, dto.failedProviders.length);
+
+        // later providers are added one by one
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> rp = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(rp, "/other", AuthType.no);
+        assertEquals(2, addedCalled.get());
+        assertEquals(11, tracker.getResourceProviderStorage().getAllHandlers().size());
+    }
+
+    @Test
+    public void testProviderChangesArePostedInOrder() throws Exception {
+        final List<String> changes = Collections.synchronizedList(new ArrayList<>());
+        final ObservationReporter reporter = new ObservationReporter() {
+
+            @Override
+            public void reportChanges(Iterable<ResourceChange> c, boolean distribute) {
+                for(final ResourceChange change : c) {
+                    changes.add(change.getType() + " " + change.getPath());
+                }
+            }
+
+            @Override
+            public void reportChanges(ObserverConfiguration config, Iterable<ResourceChange> c, boolean distribute) {
+                reportChanges(c, distribute);
+            }
+
+            @Override
+            public List<ObserverConfiguration> getObserverConfigurations() {
+                return Collections.emptyList();
+            }
+        };
+        final ResourceProviderTracker tracker = new ResourceProviderTracker();
+        tracker.setObservationReporterGenerator(new SimpleObservationReporterGenerator(reporter));
+        tracker.activate(context.bundleContext(), eventAdmin, new DoNothingChangeListener());
+
+        final List<String> expected = new ArrayList<>();
+        final List<ResourceProviderInfo> infos = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            @SuppressWarnings("unchecked")
+            final ResourceProvider<Object> rp = mock(ResourceProvider.class);
+            infos.add(fixture.registerResourceProvider(rp, "/path" + i, AuthType.no));
+            expected.add("PROVIDER_ADDED /path" + i);
+        }
+        fixture.unregisterResourceProvider(infos.get(3));
+        expected.add("PROVIDER_REMOVED /path3");
+
+        final long end = System.currentTimeMillis() + 5000;
+        while ( changes.size() < expected.size() && System.currentTimeMillis() < end ) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, changes);
+
+        tracker.deactivate();
+        assertTrue(tracker.getResourceProviderStorage().getAllHandlers().isEmpty());
+    }
+
+    private PathSet getExcludedPaths(final ResourceProviderTracker tracker, final String path) {
+        return tracker.getResourceProviderStorage().getTree().getNode(path).getValue().getProviderContext().getExcludedPaths();
+    }
+
+    @Test
+    public void testExcludedPaths() throws Exception {
+        final ResourceProviderTracker tracker = new ResourceProviderTracker();
+        tracker.setObservationReporterGenerator(new SimpleObservationReporterGenerator(new NoDothingObservationReporter()));
+        tracker.activate(context.bundleContext(), eventAdmin, new DoNothingChangeListener());
+
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> root = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(root, "/", AuthType.no);
+        assertEquals(PathSet.EMPTY_SET, getExcludedPaths(tracker, "/"));
+
+        // a nested provider is excluded from the parent provider
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> libs = mock(ResourceProvider.class);
+        final ResourceProviderInfo libsInfo = fixture.registerResourceProvider(libs, "/libs", AuthType.no);
+        assertEquals(PathSet.fromStrings("/libs"), getExcludedPaths(tracker, "/"));
+        verify(root).update(ProviderContext.EXCLUDED_PATHS_CHANGED + ProviderContext.OBSERVATION_LISTENER_CHANGED);
+
+        // a provider below a nested provider only changes the nested provider
+        reset(root);
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> libsSling = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(libsSling, "/libs/sling", AuthType.no);
+        assertEquals(PathSet.fromStrings("/libs"), getExcludedPaths(tracker, "/"));
+        assertEquals(PathSet.fromStrings("/libs/sling"), getExcludedPaths(tracker, "/libs"));
+        verify(root, never()).update(ProviderContext.EXCLUDED_PATHS_CHANGED + ProviderContext.OBSERVATION_LISTENER_CHANGED);
+
+        // providers below a passthrough provider are excluded from the parent provider
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> apps = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(apps, "/apps", AuthType.no, 0, true, ResourceProviderInfo.Mode.PASSTHROUGH);
+        @SuppressWarnings("unchecked")
+        final ResourceProvider<Object> appsSling = mock(ResourceProvider.class);
+        fixture.registerResourceProvider(appsSling, "/apps/sling", AuthType.no);
+        assertEquals(PathSet.fromStrings("/libs", "/apps/sling"), getExcludedPaths(tracker, "/"));
+        assertEquals(PathSet.fromStrings("/apps/sling"), getExcludedPaths(tracker, "/apps"));
+
+        // removing a nested provider updates the parent provider
+        fixture.unregisterResourceProvider(libsInfo);
+        assertEquals(PathSet.fromStrings("/libs/sling", "/apps/sling"), getExcludedPaths(tracker, "/"));
+    }
+
     @Test
     public void fillDto() throws Exception {
         ResourceProviderTracker tracker = registerDefaultResourceProviderTracker();
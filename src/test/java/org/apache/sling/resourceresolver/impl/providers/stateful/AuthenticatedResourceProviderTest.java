@@ -20,20 +20,36 @@ package org.apache.sling.resourceresolver.impl.providers.stateful;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Optional;
+
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.security.AccessSecurityException;
 import org.apache.sling.api.security.ResourceAccessSecurity;
 import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderCache;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderInfo;
 import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.junit.Before;
 import org.junit.Test;
@@ -50,6 +66,10 @@ public class AuthenticatedResourceProviderTest {
 
     private boolean useRAS;
 
+    private ResourceProviderHandler handler;
+
+    private ResourceAccessSecurityTracker securityTracker;
+
     @Before
     public void prepare() throws PersistenceException, AccessSecurityException {
         this.resourceResolver = mock(ResourceResolver.class);
@@ -63,12 +83,12 @@ public class AuthenticatedResourceProviderTest {
         this.resourceProvider = mock(ResourceProvider.class);
         when(resourceProvider.getQueryLanguageProvider()).thenReturn(this.queryLanguageProvider);
 
-        final ResourceProviderHandler handler = mock(ResourceProviderHandler.class);
+        this.handler = mock(ResourceProviderHandler.class);
         when(handler.getResourceProvider()).thenReturn(this.resourceProvider);
 
         useRAS = false;
 
-        final ResourceAccessSecurityTracker securityTracker = new ResourceAccessSecurityTracker() {
+        this.securityTracker = new ResourceAccessSecurityTracker() {
             @Override
             public ResourceAccessSecurity getApplicationResourceAccessSecurity() {
                 if ( useRAS) {
@@ -106,4 +126,65 @@ public class AuthenticatedResourceProviderTest {
 
         assertEquals("/parent", this.src.getParent(child).getPath());
     }
+
+    @Test public void testCacheBypassedWithPendingChanges() {
+        final ResourceProviderCache cache = new ResourceProviderCache(60000, 100);
+        when(this.handler.getCache()).thenReturn(cache);
+        when(this.resourceResolver.getUserID()).thenReturn("user");
+        final Resource created = mock(Resource.class);
+        when(created.getPath()).thenReturn("/content/new");
+        when(created.getResourceMetadata()).thenReturn(new ResourceMetadata());
+
+        // the unsaved view of a resolver is not cached
+        when(this.resourceProvider.hasChanges(this.resolveContext)).thenReturn(true);
+        when(this.resourceProvider.getResource(eq(this.resolveContext), eq("/content/new"), any(ResourceContext.class), any(Resource.class))).thenReturn(created);
+        assertEquals(created, this.src.getResource("/content/new", null, null));
+        assertEquals(0, cache.size());
+
+        // after a revert, the resource is read from the provider again
+        when(this.resourceProvider.hasChanges(this.resolveContext)).thenReturn(false);
+        when(this.resourceProvider.getResource(eq(this.resolveContext), eq("/content/new"), any(ResourceContext.class), any(Resource.class))).thenReturn(null);
+        assertNull(this.src.getResource("/content/new", null, null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void testProviderCallMetrics() throws Exception {
+        final ResourceProviderInfo info = mock(ResourceProviderInfo.class);
+        when(info.getPath()).thenReturn("/content");
+        when(this.handler.getInfo()).thenReturn(info);
+        final ResourceResolverMetrics metrics = mock(ResourceResolverMetrics.class);
+        when(metrics.isProviderCallMetricsEnabled()).thenReturn(true);
+        final AuthenticatedResourceProvider provider = new AuthenticatedResourceProvider(handler, false, this.resolveContext,
+                securityTracker, Optional.of(metrics));
+
+        provider.getResource("/content/foo", null, null);
+        verify(metrics).reportProviderCall(eq("/content"), anyLong(), eq(false));
+
+        doThrow(new PersistenceException()).when(this.resourceProvider).commit(this.resolveContext);
+        try {
+            provider.commit();
+            fail();
+        } catch ( final PersistenceException expected ) {
+            // expected
+        }
+        verify(metrics).reportProviderCall(eq("/content"), anyLong(), eq(true));
+    }
+
+    @Test public void testProviderCallMetricsToggle() throws Exception {
+        final ResourceProviderInfo info = mock(ResourceProviderInfo.class);
+        when(info.getPath()).thenReturn("/content");
+        when(this.handler.getInfo()).thenReturn(info);
+        final ResourceResolverMetrics metrics = mock(ResourceResolverMetrics.class);
+        when(metrics.isProviderCallMetricsEnabled()).thenReturn(false);
+        final AuthenticatedResourceProvider provider = new AuthenticatedResourceProvider(handler, false, this.resolveContext,
+                securityTracker, Optional.of(metrics));
+
+        provider.getResource("/content/foo", null, null);
+        verify(metrics, never()).reportProviderCall(anyString(), anyLong(), anyBoolean());
+
+        // enabling the metrics applies to existing providers
+        when(metrics.isProviderCallMetricsEnabled()).thenReturn(true);
+        provider.getResource("/content/foo", null, null);
+        verify(metrics).reportProviderCall(eq("/content"), anyLong(), eq(false));
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.providers.stateful;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.resourceresolver.impl.helper.ResourceResolverControl;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
+import org.apache.sling.resourceresolver.impl.providers.ResourceProviderStorage;
+import org.apache.sling.resourceresolver.impl.providers.tree.Node;
+import org.apache.sling.resourceresolver.impl.providers.tree.PathTree;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BasicResolveContextTest {
+
+    private ResourceResolverControl control;
+
+    private ProviderManager providerManager;
+
+    private ResourceProviderHandler handler;
+
+    private ResourceProvider<Object> provider;
+
+    private ResolveContext<Object> parentContext;
+
+    @SuppressWarnings("unchecked")
+    private ResourceProviderStorage storage(final Node<ResourceProviderHandler> node) {
+        final ResourceProviderStorage storage = mock(ResourceProviderStorage.class);
+        final PathTree<ResourceProviderHandler> tree = mock(PathTree.class);
+        when(storage.getTree()).thenReturn(tree);
+        when(tree.getBestMatchingNode("/")).thenReturn(node);
+        return storage;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setup() throws Exception {
+        control = mock(ResourceResolverControl.class);
+        providerManager = mock(ProviderManager.class);
+        handler = mock(ResourceProviderHandler.class);
+        provider = mock(ResourceProvider.class);
+        parentContext = mock(ResolveContext.class);
+        when(handler.getResourceProvider()).thenReturn(provider);
+        when(providerManager.getOrCreateResolveContext(handler, control)).thenReturn(parentContext);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test public void testParentIsLookedUpOnce() throws Exception {
+        final Node<ResourceProviderHandler> node = mock(Node.class);
+        when(node.getValue()).thenReturn(handler);
+        final ResourceProviderStorage storage = storage(node);
+        when(control.getResourceProviderStorage()).thenReturn(storage);
+
+        final BasicResolveContext<Object> context = new BasicResolveContext<>(mock(ResourceResolver.class), providerManager, control, null, "/");
+        assertSame(provider, context.getParentResourceProvider());
+        assertSame(parentContext, context.getParentResolveContext());
+        assertSame(provider, context.getParentResourceProvider());
+        verify(storage.getTree(), times(1)).getBestMatchingNode("/");
+
+        // a changed storage is looked up again
+        final ResourceProviderStorage changed = storage(null);
+        when(control.getResourceProviderStorage()).thenReturn(changed);
+        assertNull(context.getParentResourceProvider());
+        assertNull(context.getParentResolveContext());
+        verify(changed.getTree(), times(1)).getBestMatchingNode("/");
+    }
+}
@@ -27,9 +27,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
@@ -37,12 +40,14 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.security.AccessSecurityException;
 import org.apache.sling.api.security.ResourceAccessSecurity;
 import org.apache.sling.resourceresolver.impl.ResourceAccessSecurityTracker;
+import org.apache.sling.resourceresolver.impl.ResourceResolverMetrics;
 import org.apache.sling.resourceresolver.impl.providers.ResourceProviderHandler;
 import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 public class SecureResourceProviderDecoratorTest {
@@ -150,4 +155,62 @@ public class SecureResourceProviderDecoratorTest {
 
         assertThat("resources should exactly at least one item", resources.hasNext(), equalTo(false));
     }
+
+    @Test
+    public void listChildren_reportsFiltering() {
+        final List<Resource> children = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final Resource child = mock(Resource.class);
+            when(security.getReadableResource(child)).thenReturn(i % 2 == 0 ? child : null);
+            children.add(child);
+        }
+        final Resource parent = mock(Resource.class);
+        when(rp.listChildren(resolveContext, parent)).thenReturn(children.iterator());
+
+        final ResourceResolverMetrics metrics = mock(ResourceResolverMetrics.class);
+        final ResourceProviderHandler handler = mock(ResourceProviderHandler.class);
+        when(handler.getResourceProvider()).thenReturn(this.rp);
+        final AuthenticatedResourceProvider provider = new AuthenticatedResourceProvider(handler, false, resolveContext, new ResourceAccessSecurityTracker() {
+            @Override
+            public ResourceAccessSecurity getApplicationResourceAccessSecurity() {
+                return security;
+            }
+        }, Optional.of(metrics));
+
+        final Iterator<Resource> resources = provider.listChildren(parent);
+        // a partly read iterator reports the resources checked so far
+        assertThat("unexpected resource found", resources.next(), equalTo(children.get(0)));
+        verify(metrics).reportResourceAccessSecurityFiltering(Mockito.eq(1), Mockito.anyLong());
+
+        int index = 2;
+        while (resources.hasNext()) {
+            assertThat("unexpected resource found", resources.next(), equalTo(children.get(index)));
+            index += 2;
+        }
+        assertThat("unexpected number of resources", index, equalTo(200));
+        assertThat("iterator should stay exhausted", resources.hasNext(), equalTo(false));
+
+        // reported per returned resource, all children are reported once
+        final ArgumentCaptor<Integer> checked = ArgumentCaptor.forClass(Integer.class);
+        verify(metrics, Mockito.times(101)).reportResourceAccessSecurityFiltering(checked.capture(), Mockito.anyLong());
+        int total = 0;
+        for (final int count : checked.getAllValues()) {
+            total += count;
+        }
+        assertThat("unexpected number of checked resources", total, equalTo(200));
+    }
+
+    @Test
+    public void listChildren_emptyDoesNotLookUpSecurity() {
+        final Resource parent = mock(Resource.class);
+        when(rp.listChildren(resolveContext, parent)).thenReturn(Collections.<Resource>emptyList().iterator());
+        final ResourceAccessSecurityTracker tracker = mock(ResourceAccessSecurityTracker.class);
+        final ResourceProviderHandler handler = mock(ResourceProviderHandler.class);
+        when(handler.getResourceProvider()).thenReturn(this.rp);
+        final AuthenticatedResourceProvider provider = new AuthenticatedResourceProvider(handler, true, resolveContext, tracker);
+
+        assertThat(provider.listChildren(parent).hasNext(), equalTo(false));
+        assertNull(provider.getResource("/missing", null, null));
+        Mockito.verifyZeroInteractions(tracker);
+    }
 }
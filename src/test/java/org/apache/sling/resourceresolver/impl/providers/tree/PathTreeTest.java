@@ -94,6 +94,28 @@ public class PathTreeTest {
         }
     }
     
+    @Test
+    public void addAndRemove() {
+
+        tree.add(new StringPath("/apps/sling/base"));
+        assertPathHasBestMatch("/apps/sling/base/install", "/apps/sling/base");
+        assertThat(tree.getNode("/apps/sling").getValue(), nullValue());
+
+        assertThat(tree.remove("/apps/sling/base").getPath(), equalTo("/apps/sling/base"));
+        assertPathHasBestMatch("/apps/sling/base/install", "/apps");
+        assertPathDoesNotHaveExactMatch("/apps/sling");
+
+        // nodes with children are kept
+        assertThat(tree.remove("/libs").getPath(), equalTo("/libs"));
+        assertPathHasExactMatch("/libs/sling");
+        assertThat(tree.getNode("/libs").getValue(), nullValue());
+
+        assertThat(tree.remove("/content"), nullValue());
+        assertThat(tree.remove("/"), Matchers.notNullValue());
+        assertPathHasBestMatch("/libs/sling/base", "/libs/sling");
+        assertThat(tree.getBestMatchingNode("/system"), nullValue());
+    }
+
     static class StringPath implements Pathable {
 
         private final String path;